@@ -0,0 +1,503 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 异步数据操作，各方法立即返回CompletableFuture，不阻塞调用线程
+ * 请求按行键所在的RegionServer排队，每个RegionServer同时执行的请求数不超过maxInFlightPerServer，
+ * 其余请求在队列中等待而不占用线程，因此可同时挂起大量请求
+ * 超过timeoutMs（含排队时间）未完成的请求以TimeoutException结束；执行时把剩余时间设为表操作句柄的操作超时，
+ * 由HBase客户端自行结束RPC及重试，不中断执行线程（HBase 1.x中中断RPC线程可能关闭共享连接的套接字，使其他请求失败）
+ * Region位置在执行线程中查询，meta缓存未命中时也不阻塞调用线程；请求结束时取消其超时定时任务
+ * 使用前须先调用HBaseDao.init()和AsyncHBaseDao.init()；未初始化或end()之后的调用以IllegalStateException结束
+ */
+public class AsyncHBaseDao{
+
+	private static volatile ExecutorService executor = null;
+	private static volatile ScheduledThreadPoolExecutor timer = null;
+	private static volatile int maxInFlightPerServer = 0;
+	private static volatile long timeoutMs = 0;
+
+	//各RegionServer的排队状态
+	private static final ConcurrentMap<String, ServerQueue> servers = new ConcurrentHashMap<String, ServerQueue>();
+
+	private static final class ServerQueue{
+		int inFlight = 0;
+		final Deque<Request> waiting = new ArrayDeque<Request>();
+	}
+
+	/**
+	 * 排队的请求，关闭后不再执行时以fail结束其future
+	 */
+	private static abstract class Request implements Runnable{
+		abstract void fail(Throwable e);
+	}
+
+	/**
+	 * 初始化异步执行线程池
+	 * @param maxInFlightPerServer	每个RegionServer同时执行的最大请求数
+	 * @param timeoutMs	请求超时时间（毫秒），小于等于0时不超时
+	 */
+	public static synchronized void init(int maxInFlightPerServer, long timeoutMs){
+
+		AsyncHBaseDao.maxInFlightPerServer = Math.max(1, maxInFlightPerServer);
+		AsyncHBaseDao.timeoutMs = timeoutMs;
+		final AtomicInteger threadId = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "hbase-async-" + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "hbase-async-timer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		timer.setRemoveOnCancelPolicy(true);		//请求完成时取消的定时任务立即移出队列，不再引用future及结果
+	}
+
+	/**
+	 * 关闭异步执行线程池，排队中的请求不再执行，以IllegalStateException结束；
+	 * 执行中的请求不中断，由操作超时结束
+	 */
+	public static synchronized void end(){
+
+		if(null!=timer){
+			timer.shutdownNow();
+			timer = null;
+		}
+		if(null!=executor){
+			executor.shutdown();		//不中断执行中的RPC
+			executor = null;
+		}
+		for(ServerQueue queue : servers.values()){
+			failWaiting(queue);
+		}
+		servers.clear();
+	}
+
+	/**
+	 * 当前的执行线程池
+	 * @throws IllegalStateException	未初始化或已关闭
+	 */
+	private static ExecutorService executor(){
+
+		ExecutorService current = executor;
+		if(null==current){
+			throw new IllegalStateException("AsyncHBaseDao未初始化或已关闭");
+		}
+		return current;
+	}
+
+	/**
+	 * 异步增添数据至指定cell
+	 */
+	public static CompletableFuture<Void> addRow(final String tableName, String rowKey, final String columnFamily, String column, String value){
+
+		final Put put = new Put(HBaseDao.encodeRow(tableName, rowKey));
+		put.addColumn(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
+		return submit(tableName, put.getRow(), new TableCall<Void>(){
+			@Override
+			public Void call(Table table) throws IOException{
+				HBaseDao.checkFamily(tableName, columnFamily);
+				table.put(put);
+				HBaseDao.invalidateRow(table.getName(), put.getRow());
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 异步查询指定行，行不存在时结果为空Result；启用行缓存时命中则直接返回
+	 */
+	public static CompletableFuture<Result> getRow(final String tableName, String rowKey){
+
+		final Get get = new Get(HBaseDao.encodeRow(tableName, rowKey));
+		final RowCache cache = HBaseDao.getRowCache();
+		final long stamp;
+		if(null!=cache){
+			try{
+				Result cached = cache.get(TableName.valueOf(tableName), get.getRow());
+				if(null!=cached){
+					return CompletableFuture.completedFuture(cached);
+				}
+			}catch(IOException e){
+				return failed(e);
+			}
+			stamp = cache.stamp(TableName.valueOf(tableName), get.getRow());
+		}else{
+			stamp = 0;
+		}
+		return submit(tableName, get.getRow(), new TableCall<Result>(){
+			@Override
+			public Result call(Table table) throws IOException{
+				HBaseDao.checkTable(tableName);
+				Result result = table.get(get);
+				if(null!=cache){
+					cache.put(table.getName(), get.getRow(), result, stamp);
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * 异步删除指定行
+	 */
+	public static CompletableFuture<Void> deleteRow(final String tableName, String rowKey){
+
+		final Delete delete = new Delete(HBaseDao.encodeRow(tableName, rowKey));
+		return submit(tableName, delete.getRow(), new TableCall<Void>(){
+			@Override
+			public Void call(Table table) throws IOException{
+				HBaseDao.checkTable(tableName);
+				table.delete(delete);
+				HBaseDao.invalidateRow(table.getName(), delete.getRow());
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 异步删除多行，按RegionServer分组分别排队，全部完成后结束
+	 */
+	public static CompletableFuture<Void> deleteRows(final String tableName, final String[] rowKeys){
+
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		final long deadline = System.currentTimeMillis() + timeoutMs;
+		try{
+			executor().execute(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						CompletableFuture.allOf(enqueueDeletes(tableName, rowKeys, deadline)).whenComplete(new BiConsumer<Void, Throwable>(){
+							@Override
+							public void accept(Void result, Throwable e){
+								if(null==e){
+									future.complete(null);
+								}else{
+									future.completeExceptionally(e);
+								}
+							}
+						});
+					}catch(Throwable e){
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}catch(RuntimeException e){
+			return failed(e);
+		}
+		return withTimeout(future);
+	}
+
+	/**
+	 * 在执行线程中按RegionServer分组并排队各组删除
+	 */
+	private static CompletableFuture<?>[] enqueueDeletes(final String tableName, String[] rowKeys, long deadline) throws IOException{
+
+		Map<String, List<Delete>> groups = new LinkedHashMap<String, List<Delete>>();
+		RegionLocator locator = HBaseDao.connection().getRegionLocator(TableName.valueOf(tableName));
+		try{
+			for(String rowKey : rowKeys){
+				Delete delete = new Delete(HBaseDao.encodeRow(tableName, rowKey));
+				String server = locator.getRegionLocation(delete.getRow()).getHostnamePort();
+				List<Delete> group = groups.get(server);
+				if(null==group){
+					group = new ArrayList<Delete>();
+					groups.put(server, group);
+				}
+				group.add(delete);
+			}
+		}finally{
+			locator.close();
+		}
+
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+		for(Map.Entry<String, List<Delete>> group : groups.entrySet()){
+			final List<Delete> deletes = group.getValue();
+			final List<Delete> all = new ArrayList<Delete>(deletes);	//table.delete执行后deletes中只保留未删除的记录
+			CompletableFuture<Void> future = new CompletableFuture<Void>();
+			enqueue(tableName, group.getKey(), new TableCall<Void>(){
+				@Override
+				public Void call(Table table) throws IOException{
+					HBaseDao.checkTable(tableName);
+					try{
+						table.delete(deletes);
+					}finally{
+						for(Delete delete : all){
+							HBaseDao.invalidateRow(table.getName(), delete.getRow());
+						}
+					}
+					return null;
+				}
+			}, future, deadline);
+			futures.add(future);
+		}
+		return futures.toArray(new CompletableFuture<?>[futures.size()]);
+	}
+
+	/**
+	 * 异步追加数据至指定cell，结果为追加后的行记录
+	 */
+	public static CompletableFuture<Result> appendData(final String tableName, String rowKey, final String columnFamily, String column, String value){
+
+		final Append append = new Append(HBaseDao.encodeRow(tableName, rowKey));
+		append.add(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
+		return submit(tableName, append.getRow(), new TableCall<Result>(){
+			@Override
+			public Result call(Table table) throws IOException{
+				HBaseDao.checkFamily(tableName, columnFamily);
+				Result result = table.append(append);
+				HBaseDao.invalidateRow(table.getName(), append.getRow());
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * 异步流式扫描，handler在执行线程中逐行回调，结果为回调的行数
+	 * 扫描会跨越多个RegionServer，不计入单个RegionServer的并发数；超时后不再回调handler
+	 */
+	public static CompletableFuture<Long> scan(final String tableName, final ScanOptions options, final ResultHandler handler){
+
+		final CompletableFuture<Long> future = new CompletableFuture<Long>();
+		final ResultHandler stoppable = new ResultHandler(){
+			@Override
+			public boolean onResult(Result result) throws IOException{
+				return !future.isDone() && handler.onResult(result);	//超时后在下一行处停止扫描
+			}
+		};
+		try{
+			executor().execute(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						future.complete(HBaseDao.scan(tableName, options, stoppable));
+					}catch(Throwable e){
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}catch(RuntimeException e){
+			return failed(e);
+		}
+		return withTimeout(future);
+	}
+
+	/**
+	 * 对一张表执行的操作
+	 */
+	private interface TableCall<T>{
+		T call(Table table) throws IOException;
+	}
+
+	/**
+	 * 在执行线程中查询行键所在的RegionServer后排队，不阻塞调用线程
+	 */
+	private static <T> CompletableFuture<T> submit(final String tableName, final byte[] row, final TableCall<T> call){
+
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final long deadline = System.currentTimeMillis() + timeoutMs;
+		try{
+			executor().execute(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						String server;
+						RegionLocator locator = HBaseDao.connection().getRegionLocator(TableName.valueOf(tableName));
+						try{
+							server = locator.getRegionLocation(row).getHostnamePort();	//Region位置在连接内有缓存
+						}finally{
+							locator.close();
+						}
+						enqueue(tableName, server, call, future, deadline);
+					}catch(Throwable e){
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}catch(RuntimeException e){
+			return failed(e);
+		}
+		return withTimeout(future);
+	}
+
+	/**
+	 * 提交至指定RegionServer的队列，未达并发上限时立即执行，否则排队等待
+	 * @param future	请求结束时完成
+	 * @param deadline	请求的截止时间（毫秒），timeoutMs小于等于0时不使用
+	 */
+	private static <T> void enqueue(final String tableName, String server, final TableCall<T> call, final CompletableFuture<T> future, final long deadline){
+
+		final ServerQueue queue = queueOf(server);
+		final Request run = new Request(){
+			@Override
+			public void run(){
+				try{
+					if(future.isDone()){		//排队期间已超时
+						return;
+					}
+					Table table = HBaseDao.getTable(tableName);
+					int operationTimeout = table.getOperationTimeout();
+					try{
+						if(timeoutMs > 0){
+							//剩余时间作为本次操作的超时，HBase客户端到期后结束RPC及重试
+							table.setOperationTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline - System.currentTimeMillis())));
+						}
+						future.complete(call.call(table));
+					}finally{
+						table.setOperationTimeout(operationTimeout);	//句柄归还后由其他请求复用
+						HBaseDao.releaseTable(table);
+					}
+				}catch(Throwable e){
+					future.completeExceptionally(e);
+				}finally{
+					next(queue);
+				}
+			}
+
+			@Override
+			void fail(Throwable e){
+				future.completeExceptionally(e);
+			}
+		};
+		synchronized(queue){
+			if(queue.inFlight < maxInFlightPerServer){
+				queue.inFlight++;
+				execute(queue, run);
+			}else{
+				queue.waiting.add(run);
+			}
+		}
+	}
+
+	/**
+	 * 一个请求结束后，从队列中取下一个请求执行
+	 */
+	private static void next(ServerQueue queue){
+		synchronized(queue){
+			Request run = queue.waiting.poll();
+			if(null!=run){
+				execute(queue, run);
+			}else{
+				queue.inFlight--;
+			}
+		}
+	}
+
+	/**
+	 * 在执行线程池中执行请求，已关闭时结束该请求及队列中的其他请求，调用方持有queue的锁
+	 */
+	private static void execute(ServerQueue queue, Request run){
+
+		try{
+			executor().execute(run);
+		}catch(RuntimeException e){		//已关闭：IllegalStateException或RejectedExecutionException
+			queue.inFlight--;
+			run.fail(new IllegalStateException("AsyncHBaseDao已关闭，请求未执行", e));
+			failWaiting(queue);
+		}
+	}
+
+	/**
+	 * 以IllegalStateException结束队列中等待的请求
+	 */
+	private static void failWaiting(ServerQueue queue){
+		synchronized(queue){
+			Request run;
+			while(null!=(run = queue.waiting.poll())){
+				run.fail(new IllegalStateException("AsyncHBaseDao已关闭，请求未执行"));
+			}
+		}
+	}
+
+	private static ServerQueue queueOf(String server){
+
+		ServerQueue queue = servers.get(server);
+		if(null==queue){
+			ServerQueue created = new ServerQueue();
+			queue = servers.putIfAbsent(server, created);
+			if(null==queue){
+				queue = created;
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * 超时后以TimeoutException结束future，执行中的请求由操作超时结束，不中断执行线程
+	 */
+	private static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future){
+
+		if(timeoutMs <= 0){
+			return future;
+		}
+		ScheduledThreadPoolExecutor current = timer;
+		if(null==current){
+			future.completeExceptionally(new IllegalStateException("AsyncHBaseDao未初始化或已关闭"));
+			return future;
+		}
+		final long timeout = timeoutMs;
+		final ScheduledFuture<?> task;
+		try{
+			task = current.schedule(new Runnable(){
+				@Override
+				public void run(){
+					future.completeExceptionally(new TimeoutException("请求超过" + timeout + "毫秒未完成"));
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}catch(RejectedExecutionException e){
+			future.completeExceptionally(new IllegalStateException("AsyncHBaseDao已关闭", e));
+			return future;
+		}
+		future.whenComplete(new BiConsumer<T, Throwable>(){
+			@Override
+			public void accept(T result, Throwable e){
+				task.cancel(false);		//请求已结束，定时任务不再持有future
+			}
+		});
+		return future;
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable e){
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(e);
+		return future;
+	}
+}
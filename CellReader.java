@@ -0,0 +1,136 @@
+package com.cp.hbase;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Cell读取工具
+ * 直接在Cell的底层数组（array, offset, length）上比较和解码，不调用CellUtil.clone*复制数组，
+ * 热点读取循环中每个Cell不产生新对象
+ */
+public final class CellReader{
+
+	private CellReader(){
+	}
+
+	/**
+	 * 行键是否等于row
+	 */
+	public static boolean matchesRow(Cell cell, byte[] row){
+		return CellUtil.matchingRow(cell, row);
+	}
+
+	/**
+	 * 列族是否等于family
+	 */
+	public static boolean matchesFamily(Cell cell, byte[] family){
+		return CellUtil.matchingFamily(cell, family);
+	}
+
+	/**
+	 * 列名是否等于qualifier，用于与预先转换好的已知列名比较
+	 */
+	public static boolean matchesQualifier(Cell cell, byte[] qualifier){
+		return CellUtil.matchingQualifier(cell, qualifier);
+	}
+
+	/**
+	 * 列族、列名是否都相等
+	 */
+	public static boolean matchesColumn(Cell cell, byte[] family, byte[] qualifier){
+		return CellUtil.matchingColumn(cell, family, qualifier);
+	}
+
+	/**
+	 * 值是否等于value，可与预先以Bytes.toBytes转换好的字符串值比较，不生成String
+	 */
+	public static boolean matchesValue(Cell cell, byte[] value){
+		return CellUtil.matchingValue(cell, value);
+	}
+
+	/**
+	 * 以Bytes.toBytes(long)写入的8字节值
+	 */
+	public static long toLong(Cell cell){
+		return Bytes.toLong(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	/**
+	 * 以Bytes.toBytes(int)写入的4字节值
+	 */
+	public static int toInt(Cell cell){
+		return Bytes.toInt(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	/**
+	 * 以Bytes.toBytes(double)写入的8字节值
+	 */
+	public static double toDouble(Cell cell){
+		if(cell.getValueLength()!=Bytes.SIZEOF_DOUBLE){
+			throw new IllegalArgumentException("值长度为" + cell.getValueLength() + "，不是double");
+		}
+		return Bytes.toDouble(cell.getValueArray(), cell.getValueOffset());
+	}
+
+	/**
+	 * 以字符串写入的十进制整数（如addRow写入的"1024"、"-5"），直接逐字节解析，不生成String
+	 * 与Long.parseLong一致，超出long范围时抛出NumberFormatException
+	 */
+	public static long parseLong(Cell cell){
+
+		byte[] array = cell.getValueArray();
+		int offset = cell.getValueOffset();
+		int end = offset + cell.getValueLength();
+		if(offset==end){
+			throw new NumberFormatException("值为空");
+		}
+		boolean negative = array[offset]=='-';
+		int i = (negative || array[offset]=='+') ? offset + 1 : offset;
+		if(i==end){
+			throw new NumberFormatException("值不是整数");
+		}
+		//按负数累加，负数范围比正数多一个，Long.MIN_VALUE也能表示
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / 10;
+		long result = 0;
+		for(; i < end; i++){
+			int digit = array[i] - '0';
+			if(digit < 0 || digit > 9){
+				throw new NumberFormatException("值不是整数");
+			}
+			if(result < multmin || result * 10 < limit + digit){
+				throw new NumberFormatException("值超出long范围");
+			}
+			result = result * 10 - digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * 值的ByteBuffer视图，与Cell共享底层数组，不复制数据
+	 */
+	public static ByteBuffer valueBuffer(Cell cell){
+		return ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()).slice();
+	}
+
+	/**
+	 * 行键的ByteBuffer视图，与Cell共享底层数组，不复制数据
+	 */
+	public static ByteBuffer rowBuffer(Cell cell){
+		return ByteBuffer.wrap(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength()).slice();
+	}
+
+	/**
+	 * 生成“行键 列族 列 值 时间戳”格式的文本，只在输出时转换字符串，不复制字节数组
+	 */
+	public static String toString(Cell cell){
+		return "行键：" + Bytes.toString(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength()) + "\t" +
+				"列族：" + Bytes.toString(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength()) + "\t" +
+				"列：" + Bytes.toString(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength()) + "\t" +
+				"值：" + Bytes.toString(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()) + "\t" +
+				"时间戳：" + cell.getTimestamp();
+	}
+}
@@ -0,0 +1,18 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.Cell;
+
+/**
+ * 逐个Cell回调，配合CellReader在Cell上直接读取，不复制数据
+ * Cell与所在的Result共享底层数组，回调中只读取需要的部分即可
+ */
+public interface CellVisitor{
+
+	/**
+	 * @param cell	当前Cell
+	 * @return	true继续，false停止
+	 */
+	boolean visit(Cell cell) throws IOException;
+}
@@ -0,0 +1,302 @@
+package com.cp.hdfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 压缩上传及解压下载
+ * 流模式：数据经压缩流边读边写，HDFS上为普通的.gz/.snappy/.lz4/.zst文件，除bzip2外不可切分
+ * SequenceFile模式：数据按缓冲区大小切为若干记录（原始偏移 -> 数据块），以块压缩的SequenceFile存储，
+ * 文件中有同步标记，MapReduce/Spark可按HDFS块切分并行读取，适合大文件
+ * 压缩器、解压器从CodecPool借用并归还；Snappy、LZ4、Zstd需要Hadoop本地库
+ * 上传先写入同目录下的临时文件，成功后再重命名为目标文件，失败时删除临时文件，不会留下不完整的目标文件
+ */
+class CodecCopier {
+	
+	private static final String TMP_SUFFIX = "._COPYING_";
+	
+	private final FileSystem fs;
+	private final CopyOptions options;
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param options	复制参数，使用其中的压缩格式、SequenceFile模式及缓冲区、块大小、副本数、覆盖、进度回调设置
+	 */
+	CodecCopier(FileSystem fs, CopyOptions options){
+		this.fs = fs;
+		this.options = options;
+	}
+	
+	/**
+	 * 按名称或文件扩展名查找压缩格式
+	 * @param conf	配置，决定可用的压缩格式（io.compression.codecs）
+	 * @param name	压缩格式名称，如snappy、lz4、zstd、gzip，或完整类名；为CopyOptions.CODEC_BY_EXTENSION时按path的扩展名查找，为null时不压缩
+	 * @param path	按扩展名查找时使用的文件路径
+	 * @return	压缩格式，不压缩时为null
+	 * @throws IllegalArgumentException	压缩格式不支持，或按扩展名查找时扩展名无对应格式
+	 */
+	static CompressionCodec resolve(Configuration conf, String name, Path path){
+		
+		if(null==name){
+			return null;
+		}
+		CompressionCodecFactory factory = new CompressionCodecFactory(conf);
+		if(CopyOptions.CODEC_BY_EXTENSION.equals(name)){
+			CompressionCodec codec = factory.getCodec(path);
+			if(null==codec){
+				throw new IllegalArgumentException("无法按扩展名确定压缩格式：" + path.getName());		//不静默按未压缩处理
+			}
+			return codec;
+		}
+		CompressionCodec codec = factory.getCodecByName("zstd".equalsIgnoreCase(name) ? "zstandard" : name);
+		if(null==codec){
+			throw new IllegalArgumentException("不支持的压缩格式：" + name);
+		}
+		return codec;
+	}
+	
+	/**
+	 * 压缩上传并记录指标，供各DAO的uploadCompressed调用
+	 * @param fs	HDFS文件系统客户端
+	 * @param localFilePath	待上传的文件路径
+	 * @param destFilePath	上传至HDFS的文件路径
+	 * @param options	复制参数
+	 */
+	static TransferReport upload(FileSystem fs, String localFilePath, String destFilePath, CopyOptions options) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		TransferReport report = null;
+		try{
+			report = new CodecCopier(fs, options).upload(localFilePath, new Path(destFilePath));
+			success = true;
+			return report;
+		}finally{
+			Metrics.record("hdfs.upload", Metrics.pathLabel(destFilePath), start, success, 0, (null==report) ? 0 : report.getBytes());
+		}
+	}
+	
+	/**
+	 * 解压下载并记录指标，供各DAO的downloadCompressed调用
+	 * @param fs	HDFS文件系统客户端
+	 * @param destFilePath	待下载的HDFS文件路径
+	 * @param localFilePath	本地文件保存路径
+	 * @param options	复制参数
+	 */
+	static TransferReport download(FileSystem fs, String destFilePath, String localFilePath, CopyOptions options) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		TransferReport report = null;
+		try{
+			report = new CodecCopier(fs, options).download(new Path(destFilePath), localFilePath);
+			success = true;
+			return report;
+		}finally{
+			Metrics.record("hdfs.download", Metrics.pathLabel(destFilePath), start, success, 0, (null==report) ? 0 : report.getBytes());
+		}
+	}
+	
+	/**
+	 * 压缩上传，写入临时文件成功后再重命名为目标文件
+	 * @return	传输结果，字节数为原始字节数，存储字节数为HDFS文件长度
+	 */
+	TransferReport upload(String localFilePath, Path dest) throws IOException{
+		
+		Configuration conf = fs.getConf();
+		String name = options.getCodec();
+		if(options.isSequenceFile() && CopyOptions.CODEC_BY_EXTENSION.equals(name)){
+			name = null;		//SequenceFile的扩展名不对应压缩格式，使用DefaultCodec
+		}
+		CompressionCodec codec = resolve(conf, name, dest);
+		if(!options.isOverwrite() && fs.exists(dest)){
+			throw new FileAlreadyExistsException("目标文件已存在：" + dest);
+		}
+		long blockSize = (options.getBlockSize() > 0) ? options.getBlockSize() : fs.getDefaultBlockSize(dest);
+		short replication = (options.getReplication() > 0) ? options.getReplication() : fs.getDefaultReplication(dest);
+		File local = new File(localFilePath);
+		ProgressTracker progress = new ProgressTracker(dest.toString(), local.length(), options.getListener(), options.getProgressIntervalMs());
+		TransferReport report = new TransferReport();
+		
+		Path tmp = new Path(dest.getParent(), dest.getName() + TMP_SUFFIX);
+		boolean success = false;
+		InputStream in = new FileInputStream(local);
+		try{
+			FSDataOutputStream out = fs.create(tmp, true, options.getBufferSize(), replication, blockSize);
+			try{
+				if(options.isSequenceFile()){
+					writeSequenceFile(conf, in, out, (null==codec) ? ReflectionUtils.newInstance(DefaultCodec.class, conf) : codec, progress);
+				}else if(null==codec){
+					copy(in, out, progress);
+				}else{
+					Compressor compressor = CodecPool.getCompressor(codec);
+					try{
+						OutputStream cout = codec.createOutputStream(out, compressor);
+						copy(in, cout, progress);
+						cout.close();		//写出压缩流尾部，同时关闭HDFS输出流
+					}finally{
+						CodecPool.returnCompressor(compressor);
+					}
+				}
+				out.close();		//关闭失败（如最后的块未能提交）须抛出，不能重命名为目标文件
+			}finally{
+				IOUtils.closeStream(out);
+			}
+			if(options.isOverwrite() && fs.exists(dest) && !fs.delete(dest, false)){
+				throw new IOException("无法覆盖目标文件：" + dest);
+			}
+			if(!fs.rename(tmp, dest)){
+				throw new IOException("无法将" + tmp + "重命名为" + dest);
+			}
+			success = true;
+		}finally{
+			in.close();
+			if(!success){
+				fs.delete(tmp, false);		//失败时删除不完整的临时文件
+			}
+		}
+		progress.done();
+		report.success(progress.getTransferred(), fs.getFileStatus(dest).getLen());
+		report.finish();
+		return report;
+	}
+	
+	/**
+	 * 解压下载，失败时删除不完整的本地文件
+	 * @return	传输结果，字节数为解压后的字节数，存储字节数为HDFS文件长度
+	 */
+	TransferReport download(Path src, String localFilePath) throws IOException{
+		
+		Configuration conf = fs.getConf();
+		File local = new File(localFilePath);
+		if(!options.isOverwrite() && local.exists()){
+			throw new FileAlreadyExistsException("本地文件已存在：" + localFilePath);
+		}
+		long stored = fs.getFileStatus(src).getLen();
+		ProgressTracker progress = new ProgressTracker(src.toString(), -1, options.getListener(), options.getProgressIntervalMs());
+		TransferReport report = new TransferReport();
+		
+		OutputStream out = new FileOutputStream(local);
+		boolean success = false;
+		try{
+			if(options.isSequenceFile()){
+				readSequenceFile(conf, src, out, progress);		//压缩格式记录在SequenceFile文件头中
+			}else{
+				CompressionCodec codec = resolve(conf, options.getCodec(), src);
+				InputStream in = fs.open(src, options.getBufferSize());
+				Decompressor decompressor = (null==codec) ? null : CodecPool.getDecompressor(codec);
+				try{
+					if(null!=codec){
+						in = codec.createInputStream(in, decompressor);
+					}
+					copy(in, out, progress);
+				}finally{
+					in.close();
+					if(null!=decompressor){
+						CodecPool.returnDecompressor(decompressor);
+					}
+				}
+			}
+			success = true;
+		}finally{
+			out.close();
+			if(!success){
+				local.delete();		//失败时删除不完整的本地文件
+			}
+		}
+		progress.done();
+		report.success(progress.getTransferred(), stored);
+		report.finish();
+		return report;
+	}
+	
+	private void copy(InputStream in, OutputStream out, ProgressTracker progress) throws IOException{
+		
+		byte[] buffer = new byte[options.getBufferSize()];
+		int n;
+		while((n = in.read(buffer)) >= 0){
+			out.write(buffer, 0, n);
+			progress.add(n);
+		}
+	}
+	
+	/**
+	 * 按缓冲区大小切分为记录写入块压缩的SequenceFile，写入由调用方创建的HDFS输出流
+	 */
+	private void writeSequenceFile(Configuration conf, InputStream in, FSDataOutputStream out, CompressionCodec codec, ProgressTracker progress) throws IOException{
+		
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.stream(out),
+				SequenceFile.Writer.keyClass(LongWritable.class),
+				SequenceFile.Writer.valueClass(BytesWritable.class),
+				SequenceFile.Writer.compression(CompressionType.BLOCK, codec));
+		try{
+			byte[] buffer = new byte[options.getBufferSize()];
+			LongWritable offset = new LongWritable();
+			BytesWritable chunk = new BytesWritable();
+			long position = 0;
+			int n;
+			while((n = fill(in, buffer)) > 0){		//记录尽量填满缓冲区，减少记录数
+				offset.set(position);
+				chunk.set(buffer, 0, n);
+				writer.append(offset, chunk);
+				position += n;
+				progress.add(n);
+			}
+		}finally{
+			writer.close();		//传入的输出流由调用方关闭
+		}
+	}
+	
+	/**
+	 * 读满缓冲区，到达文件末尾时返回实际读取的字节数
+	 */
+	private static int fill(InputStream in, byte[] buffer) throws IOException{
+		
+		int total = 0;
+		int n;
+		while(total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) >= 0){
+			total += n;
+		}
+		return total;
+	}
+	
+	private void readSequenceFile(Configuration conf, Path src, OutputStream out, ProgressTracker progress) throws IOException{
+		
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(src), SequenceFile.Reader.bufferSize(options.getBufferSize()));
+		try{
+			LongWritable offset = new LongWritable();
+			BytesWritable chunk = new BytesWritable();
+			while(reader.next(offset, chunk)){
+				out.write(chunk.getBytes(), 0, chunk.getLength());
+				progress.add(chunk.getLength());
+			}
+		}finally{
+			reader.close();
+		}
+	}
+}
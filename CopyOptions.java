@@ -0,0 +1,134 @@
+package com.cp.hdfs;
+
+/**
+ * 流式复制参数：缓冲区、HDFS文件的块大小及副本数、是否覆盖、进度回调、压缩格式
+ * 未设置的块大小、副本数使用文件系统默认值；各set方法返回自身，可链式调用
+ */
+public class CopyOptions {
+	
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	public static final long DEFAULT_PROGRESS_INTERVAL_MS = 1000;
+	public static final String CODEC_BY_EXTENSION = "auto";		//按HDFS文件扩展名选择压缩格式
+	
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private boolean directBuffer = false;
+	private long blockSize = -1;
+	private short replication = -1;
+	private boolean overwrite = true;
+	private TransferListener listener = null;
+	private long progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+	private String codec = null;
+	private boolean sequenceFile = false;
+	
+	/**
+	 * 复制缓冲区大小（字节），同时作为HDFS流的缓冲区大小
+	 */
+	public CopyOptions setBufferSize(int bufferSize){
+		this.bufferSize = bufferSize;
+		return this;
+	}
+	
+	/**
+	 * 下载时是否使用堆外直接缓冲区，HDFS流支持按ByteBuffer读取时少一次数组复制
+	 */
+	public CopyOptions setDirectBuffer(boolean directBuffer){
+		this.directBuffer = directBuffer;
+		return this;
+	}
+	
+	/**
+	 * 上传时HDFS文件的块大小（字节）
+	 */
+	public CopyOptions setBlockSize(long blockSize){
+		this.blockSize = blockSize;
+		return this;
+	}
+	
+	/**
+	 * 上传时HDFS文件的副本数
+	 */
+	public CopyOptions setReplication(short replication){
+		this.replication = replication;
+		return this;
+	}
+	
+	/**
+	 * 目标文件已存在时是否覆盖，不覆盖时抛出FileAlreadyExistsException
+	 */
+	public CopyOptions setOverwrite(boolean overwrite){
+		this.overwrite = overwrite;
+		return this;
+	}
+	
+	/**
+	 * 进度回调，每隔progressIntervalMs及传输结束时调用
+	 */
+	public CopyOptions setListener(TransferListener listener){
+		this.listener = listener;
+		return this;
+	}
+	
+	public CopyOptions setProgressIntervalMs(long progressIntervalMs){
+		this.progressIntervalMs = progressIntervalMs;
+		return this;
+	}
+	
+	/**
+	 * 上传时压缩、下载时解压的格式，如snappy、lz4、zstd、gzip，为CODEC_BY_EXTENSION时按HDFS文件扩展名选择，为null时不压缩
+	 */
+	public CopyOptions setCodec(String codec){
+		this.codec = codec;
+		return this;
+	}
+	
+	/**
+	 * 是否以块压缩的SequenceFile存储，可切分，适合需要并行处理的大文件；未设置压缩格式时使用DefaultCodec
+	 */
+	public CopyOptions setSequenceFile(boolean sequenceFile){
+		this.sequenceFile = sequenceFile;
+		return this;
+	}
+	
+	public int getBufferSize(){
+		return bufferSize;
+	}
+	
+	public boolean isDirectBuffer(){
+		return directBuffer;
+	}
+	
+	public long getBlockSize(){
+		return blockSize;
+	}
+	
+	public short getReplication(){
+		return replication;
+	}
+	
+	public boolean isOverwrite(){
+		return overwrite;
+	}
+	
+	public TransferListener getListener(){
+		return listener;
+	}
+	
+	public long getProgressIntervalMs(){
+		return progressIntervalMs;
+	}
+	
+	public String getCodec(){
+		return codec;
+	}
+	
+	public boolean isSequenceFile(){
+		return sequenceFile;
+	}
+	
+	/**
+	 * 是否需要经过压缩层复制
+	 */
+	boolean isCompressed(){
+		return null!=codec || sequenceFile;
+	}
+}
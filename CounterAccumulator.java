@@ -0,0 +1,303 @@
+package com.cp.hbase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 计数累加器，基于Increment
+ * 同一行同一列的增量先在客户端合并，每隔windowMs把合并后的增量按行组成Increment批量提交，
+ * 同一行的多个列合并为一个Increment，RPC数与事件数无关，只与窗口内不同的行数有关
+ * 客户端未提交的增量及ASYNC_WAL/SKIP_WAL下服务端未落盘的数据在进程或RegionServer宕机时丢失，
+ * 丢失量不超过一个窗口（及WAL同步间隔）内的增量
+ * 提交失败的行把增量合并回待提交集合，随下一个窗口重试，连续失败MAX_RETRIES次后放弃并回调listener或抛出异常；
+ * Increment不是幂等操作，服务端已执行但客户端收到失败（如超时）时重试会重复累加，即失败重试为至少一次语义
+ * 线程安全；计数值以8字节long存储，可用CellReader.toLong读取
+ */
+public class CounterAccumulator implements Closeable{
+
+	//合并同一{行,列}的增量
+	private static final BiFunction<Long, Long, Long> SUM = new BiFunction<Long, Long, Long>(){
+		@Override
+		public Long apply(Long a, Long b){
+			return a + b;
+		}
+	};
+
+	private static final int MAX_RETRIES = 3;		//同一行连续提交失败的最大重试次数
+
+	private final String tableName;
+	private final Durability durability;
+	private final int maxKeys;
+	private final HBaseWriter.FailureListener listener;
+
+	//待提交的增量，{行键, 列族, 列名} -> 累计增量
+	private final ConcurrentHashMap<Key, Long> pending = new ConcurrentHashMap<Key, Long>();
+	private final Map<String, Integer> retries = new HashMap<String, Integer>();		//各行连续失败次数，只在flush中访问
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private final AtomicLong flushedIncrements = new AtomicLong();
+	private final ScheduledExecutorService flusher;		//定时提交线程，每个累加器一个，慢表不影响其他表
+	private final Runnable flushTask;
+	private final ScheduledFuture<?> windowTask;
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();		//add持读锁，close持写锁，关闭后不会再有增量进入
+	private volatile IOException asyncError = null;		//定时提交中出现的异常，在下一次调用中抛出
+	private volatile boolean closed = false;
+
+	private static final class Key{
+		final String row;
+		final String family;
+		final String column;
+
+		Key(String row, String family, String column){
+			this.row = row;
+			this.family = family;
+			this.column = column;
+		}
+
+		@Override
+		public int hashCode(){
+			return (row.hashCode() * 31 + family.hashCode()) * 31 + column.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			return row.equals(other.row) && family.equals(other.family) && column.equals(other.column);
+		}
+	}
+
+	/**
+	 * @param tableName	表名
+	 * @param windowMs	合并窗口（毫秒），每个窗口提交一次，须大于0
+	 * @param durability	Increment的持久化级别，ASYNC_WAL/SKIP_WAL以有限的丢失换取吞吐
+	 * @param maxKeys	待提交的不同{行,列}数超过该值时提前提交，限制内存占用
+	 * @param listener	提交失败回调，每个重试耗尽的Increment回调一次；为null时失败以异常抛出
+	 */
+	CounterAccumulator(String tableName, long windowMs, Durability durability, int maxKeys, HBaseWriter.FailureListener listener){
+
+		if(windowMs <= 0){
+			throw new IllegalArgumentException("计数累加器的合并窗口须大于0：" + windowMs);
+		}
+		this.tableName = tableName;
+		this.durability = durability;
+		this.maxKeys = maxKeys;
+		this.listener = listener;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "hbase-counter-flusher-" + CounterAccumulator.this.tableName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.flushTask = new Runnable(){
+			@Override
+			public void run(){
+				flushScheduled.set(false);
+				try{
+					flush();
+				}catch(IOException e){
+					asyncError = e;
+				}
+			}
+		};
+		this.windowTask = flusher.scheduleWithFixedDelay(flushTask, windowMs, windowMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 累加
+	 * @param rowKey	行键
+	 * @param columnFamily	列族
+	 * @param column	列名
+	 * @param delta	增量
+	 */
+	public void add(String rowKey, String columnFamily, String column, long delta) throws IOException{
+
+		throwAsyncError();
+		closeLock.readLock().lock();
+		try{
+			if(closed){
+				throw new IOException("表" + tableName + "的计数累加器已关闭");
+			}
+			pending.merge(new Key(rowKey, columnFamily, column), delta, SUM);
+			if(pending.size() > maxKeys && flushScheduled.compareAndSet(false, true)){
+				flusher.execute(flushTask);
+			}
+		}finally{
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 立即提交合并后的增量，失败的行合并回待提交集合，重试耗尽时回调listener或抛出异常
+	 */
+	public synchronized void flush() throws IOException{
+
+		//逐个取出待提交的增量，按行分组，取出后新到的增量进入下一个窗口
+		Map<String, Map<Key, Long>> rows = new LinkedHashMap<String, Map<Key, Long>>();
+		for(Key key : pending.keySet()){
+			Long delta = pending.remove(key);
+			if(null==delta || 0==delta){
+				continue;
+			}
+			Map<Key, Long> deltas = rows.get(key.row);
+			if(null==deltas){
+				deltas = new LinkedHashMap<Key, Long>();
+				rows.put(key.row, deltas);
+			}
+			deltas.put(key, delta);
+		}
+		if(rows.isEmpty()){
+			return;
+		}
+
+		//同一行的多个列合并为一个Increment
+		List<String> rowKeys = new ArrayList<String>(rows.keySet());
+		List<Increment> batch = new ArrayList<Increment>(rowKeys.size());
+		for(String row : rowKeys){
+			Increment increment = new Increment(HBaseDao.encodeRow(tableName, row));
+			increment.setDurability(durability);
+			for(Map.Entry<Key, Long> e : rows.get(row).entrySet()){
+				increment.addColumn(Bytes.toBytes(e.getKey().family), Bytes.toBytes(e.getKey().column), e.getValue());
+			}
+			batch.add(increment);
+		}
+
+		Object[] results = new Object[batch.size()];
+		IOException error = null;
+		Table table = HBaseDao.getTable(tableName);
+		long start = Metrics.start();
+		try{
+			table.batch(batch, results);
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("计数提交被中断").initCause(e);
+		}catch(IOException e){
+			error = e;		//部分失败时逐条处理，results中失败项为异常或null
+		}finally{
+			HBaseDao.releaseTable(table);
+			Metrics.record("hbase.increment", tableName, start, null==error, batch.size(), 0);
+		}
+
+		TableName name = TableName.valueOf(tableName);
+		int failures = 0;
+		Throwable firstCause = null;
+		for(int i = 0; i < results.length; i++){
+			Increment increment = batch.get(i);
+			String row = rowKeys.get(i);
+			HBaseDao.invalidateRow(name, increment.getRow());
+			if(null==results[i] || results[i] instanceof Throwable){
+				Integer count = retries.get(row);
+				int attempts = (null==count) ? 1 : count + 1;
+				if(attempts <= MAX_RETRIES){
+					//合并回待提交集合，与期间新到的增量一起在下一个窗口提交
+					retries.put(row, attempts);
+					for(Map.Entry<Key, Long> e : rows.get(row).entrySet()){
+						pending.merge(e.getKey(), e.getValue(), SUM);
+					}
+					continue;
+				}
+				retries.remove(row);
+				Throwable cause = (results[i] instanceof Throwable) ? (Throwable) results[i] : error;
+				if(null!=listener){
+					listener.onFailure(increment, cause, null);
+				}else if(0==failures++){
+					firstCause = cause;
+				}
+			}else{
+				retries.remove(row);
+				flushedIncrements.incrementAndGet();
+			}
+		}
+		if(failures > 0){
+			throw new IOException("表" + tableName + "有" + failures + "行计数重试" + MAX_RETRIES + "次后仍提交失败", firstCause);
+		}
+	}
+
+	/**
+	 * 已成功提交的Increment数（RPC中的行数）
+	 */
+	public long getFlushedIncrements(){
+		return flushedIncrements.get();
+	}
+
+	/**
+	 * 待提交的不同{行,列}数
+	 */
+	public int getPendingCount(){
+		return pending.size();
+	}
+
+	/**
+	 * 提交剩余增量并停止定时提交
+	 */
+	@Override
+	public void close() throws IOException{
+
+		closeLock.writeLock().lock();		//等待进行中的add完成
+		try{
+			if(closed){
+				return;
+			}
+			closed = true;
+		}finally{
+			closeLock.writeLock().unlock();
+		}
+		windowTask.cancel(false);
+		flusher.shutdown();
+		try{
+			flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);	//等待进行中的定时提交结束
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("等待计数提交结束被中断").initCause(e);
+		}
+		//失败的行合并回待提交集合，重试次数有限，循环必然结束；某些行放弃后继续提交其余行，最后抛出
+		IOException failure = null;
+		do{
+			try{
+				flush();
+			}catch(IOException e){
+				if(null==failure){
+					failure = e;
+				}
+			}
+		}while(!pending.isEmpty());
+		throwAsyncError();
+		if(null!=failure){
+			throw failure;
+		}
+	}
+
+	private void throwAsyncError() throws IOException{
+		IOException e = asyncError;
+		if(null!=e){
+			asyncError = null;
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.cp.hbase;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+
+/**
+ * 列族参数，描述列族的压缩、布隆过滤器、数据块编码、块大小、缓存及TTL、版本数等性能相关属性
+ * 未设置的属性保持HBase默认值；各set方法返回自身，可链式调用
+ */
+public class FamilyOptions{
+
+	private final String name;
+	private Compression.Algorithm compression = null;
+	private BloomType bloomType = null;
+	private DataBlockEncoding encoding = null;
+	private int blockSize = -1;
+	private Boolean inMemory = null;
+	private Boolean blockCacheEnabled = null;
+	private int timeToLive = -1;
+	private int maxVersions = -1;
+
+	/**
+	 * @param name	列族名
+	 */
+	public FamilyOptions(String name){
+		this.name = name;
+	}
+
+	/**
+	 * 以默认参数描述多个列族
+	 * @param names	列族名数组
+	 */
+	public static FamilyOptions[] of(String[] names){
+		FamilyOptions[] families = new FamilyOptions[names.length];
+		for(int i = 0; i < names.length; i++){
+			families[i] = new FamilyOptions(names[i]);
+		}
+		return families;
+	}
+
+	/**
+	 * 压缩算法，如SNAPPY、LZ4、GZ
+	 */
+	public FamilyOptions setCompression(Compression.Algorithm compression){
+		this.compression = compression;
+		return this;
+	}
+
+	/**
+	 * 布隆过滤器类型，按行查询用ROW，按行+列查询用ROWCOL
+	 */
+	public FamilyOptions setBloomType(BloomType bloomType){
+		this.bloomType = bloomType;
+		return this;
+	}
+
+	/**
+	 * 数据块编码，如FAST_DIFF、ROW_INDEX_V1，行键前缀重复较多时可显著减小存储及BlockCache占用
+	 */
+	public FamilyOptions setDataBlockEncoding(DataBlockEncoding encoding){
+		this.encoding = encoding;
+		return this;
+	}
+
+	/**
+	 * HFile数据块大小（字节），随机读多时调小，顺序扫描多时调大
+	 */
+	public FamilyOptions setBlockSize(int blockSize){
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * 是否在BlockCache中优先保留
+	 */
+	public FamilyOptions setInMemory(boolean inMemory){
+		this.inMemory = inMemory;
+		return this;
+	}
+
+	/**
+	 * 读取时是否写入BlockCache
+	 */
+	public FamilyOptions setBlockCacheEnabled(boolean blockCacheEnabled){
+		this.blockCacheEnabled = blockCacheEnabled;
+		return this;
+	}
+
+	/**
+	 * 数据存活时间（秒），过期数据在合并时删除
+	 */
+	public FamilyOptions setTimeToLive(int timeToLive){
+		this.timeToLive = timeToLive;
+		return this;
+	}
+
+	/**
+	 * 最多保留的版本数
+	 */
+	public FamilyOptions setMaxVersions(int maxVersions){
+		this.maxVersions = maxVersions;
+		return this;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * 生成对应的列族描述
+	 */
+	public HColumnDescriptor toDescriptor(){
+		return applyTo(new HColumnDescriptor(name));
+	}
+
+	/**
+	 * 将已设置的属性写入已有的列族描述，未设置的属性保持不变
+	 * @param desc	列族描述
+	 */
+	public HColumnDescriptor applyTo(HColumnDescriptor desc){
+
+		if(null!=compression){
+			desc.setCompressionType(compression);
+		}
+		if(null!=bloomType){
+			desc.setBloomFilterType(bloomType);
+		}
+		if(null!=encoding){
+			desc.setDataBlockEncoding(encoding);
+		}
+		if(blockSize > 0){
+			desc.setBlocksize(blockSize);
+		}
+		if(null!=inMemory){
+			desc.setInMemory(inMemory);
+		}
+		if(null!=blockCacheEnabled){
+			desc.setBlockCacheEnabled(blockCacheEnabled);
+		}
+		if(timeToLive > 0){
+			desc.setTimeToLive(timeToLive);
+		}
+		if(maxVersions > 0){
+			desc.setMaxVersions(maxVersions);
+		}
+		return desc;
+	}
+}
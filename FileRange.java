@@ -0,0 +1,55 @@
+package com.cp.hdfs;
+
+import org.apache.hadoop.fs.Path;
+
+/**
+ * 文件中的一段（通常为一个HDFS块）及其副本所在的DataNode
+ */
+public class FileRange {
+	
+	private final Path path;
+	private final long offset;
+	private final long length;
+	private final String[] hosts;
+	private final String[] racks;
+	
+	/**
+	 * @param path	文件路径
+	 * @param offset	起始偏移
+	 * @param length	长度
+	 * @param hosts	副本所在的主机
+	 * @param racks	各副本所在的机架，与hosts一一对应
+	 */
+	public FileRange(Path path, long offset, long length, String[] hosts, String[] racks){
+		this.path = path;
+		this.offset = offset;
+		this.length = length;
+		this.hosts = hosts;
+		this.racks = racks;
+	}
+	
+	public Path getPath(){
+		return path;
+	}
+	
+	public long getOffset(){
+		return offset;
+	}
+	
+	public long getLength(){
+		return length;
+	}
+	
+	public String[] getHosts(){
+		return hosts;
+	}
+	
+	public String[] getRacks(){
+		return racks;
+	}
+	
+	@Override
+	public String toString(){
+		return path + "[" + offset + "," + (offset + length) + ")@" + String.join(",", hosts);
+	}
+}
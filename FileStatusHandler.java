@@ -0,0 +1,17 @@
+package com.cp.hdfs;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileStatus;
+
+/**
+ * 遍历结果回调，在调用walk的线程中执行
+ */
+public interface FileStatusHandler {
+	
+	/**
+	 * @param status	文件或目录的状态
+	 * @return	true继续，false停止遍历
+	 */
+	boolean onStatus(FileStatus status) throws IOException;
+}
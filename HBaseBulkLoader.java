@@ -0,0 +1,656 @@
+package com.cp.hbase;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.io.hfile.HFileScanner;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.MD5Hash;
+
+/**
+ * HFile批量导入
+ * 解析CSV/TSV文件（本地文件或已通过HDFSDao.uploadFile上传至HDFS的文件），按目标表的Region边界分区、排序后直接生成HFile，
+ * 再由LoadIncrementalHFiles整体移入各Region，数据不经过WAL和MemStore
+ * 每个输入文件由一个工作线程解析，各分区在内存中累积，缓冲数据超过bufferSize时把最大的分区排序写出为一个HFile，文件名中记录Region下标
+ * 全部文件解析完成后，同一Region的多个HFile（来自不同输入文件或多次写出）按序归并为一个，
+ * 避免超过LoadIncrementalHFiles每个Region每个列族的HFile数上限（hbase.mapreduce.bulkload.max.hfiles.perRegion.perFamily）而整体失败
+ * 文件处理完成后在暂存目录写入完成标记，中断后以相同暂存目录重新执行时跳过已完成的文件，已移入Region的HFile不会重复导入
+ * 输入行格式：行键,值1,值2,...，值依次对应构造时给定的列名，空值跳过；同一输入文件内重复的{行,列}保留文件中靠后的值，
+ * 不同输入文件之间重复时保留其中之一
+ * 统计信息随处理进度更新，导入过程中可从其他线程读取getCompletedFiles等查看进度
+ */
+public class HBaseBulkLoader{
+
+	private static final long DEFAULT_BUFFER_SIZE = 128L * 1024 * 1024;
+	private static final String MERGED_PREFIX = "merged";
+
+	private final Connection conn;
+	private final ExecutorService pool;
+	private final TableName tableName;
+	private final RowKeyCodec codec;
+	private final byte[] family;
+	private final byte[][] columns;
+	private final Path hfileDir;		//暂存HFile，按列族分子目录，LoadIncrementalHFiles要求的目录结构
+	private final Path progressDir;	//已完成的输入文件标记
+	private final Path mergeDir;		//归并中的HFile，完成后移入hfileDir
+
+	private Character delimiter = null;
+	private boolean skipHeader = false;
+	private long bufferSize = DEFAULT_BUFFER_SIZE;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private final AtomicLong rows = new AtomicLong();
+	private final AtomicLong cells = new AtomicLong();
+	private final AtomicLong skippedLines = new AtomicLong();
+	private final AtomicInteger hfiles = new AtomicInteger();
+	private final AtomicInteger resumedFiles = new AtomicInteger();
+	private final AtomicInteger completedFiles = new AtomicInteger();
+	private volatile int inputFiles = 0;
+
+	/**
+	 * @param conn	HBase数据库连接
+	 * @param pool	解析输入文件的线程池
+	 * @param tableName	表名
+	 * @param codec	行键编解码器
+	 * @param columnFamily	列族
+	 * @param columns	行键之后各字段对应的列名
+	 * @param stagingDir	暂存目录，须与HBase位于同一文件系统
+	 */
+	HBaseBulkLoader(Connection conn, ExecutorService pool, String tableName, RowKeyCodec codec, String columnFamily, String[] columns, String stagingDir){
+		this.conn = conn;
+		this.pool = pool;
+		this.tableName = TableName.valueOf(tableName);
+		this.codec = codec;
+		this.family = Bytes.toBytes(columnFamily);
+		this.columns = new byte[columns.length][];
+		for(int i = 0; i < columns.length; i++){
+			this.columns[i] = Bytes.toBytes(columns[i]);
+		}
+		this.hfileDir = new Path(stagingDir, "hfiles");
+		this.progressDir = new Path(stagingDir, "progress");
+		this.mergeDir = new Path(stagingDir, "merging");
+	}
+
+	/**
+	 * 字段分隔符，未设置时.tsv文件按制表符、其他文件按逗号分隔
+	 */
+	public HBaseBulkLoader setDelimiter(char delimiter){
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	/**
+	 * 是否跳过每个文件的首行（表头）
+	 */
+	public HBaseBulkLoader setSkipHeader(boolean skipHeader){
+		this.skipHeader = skipHeader;
+		return this;
+	}
+
+	/**
+	 * 每个解析线程在内存中缓冲的最大字节数，越大生成的HFile越少
+	 */
+	public HBaseBulkLoader setBufferSize(long bufferSize){
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * 同时解析的文件数
+	 */
+	public HBaseBulkLoader setParallelism(int parallelism){
+		this.parallelism = Math.max(1, parallelism);
+		return this;
+	}
+
+	/**
+	 * 执行导入：生成HFile、移入Region、删除暂存目录
+	 * @param inputPaths	输入文件或目录，可使用通配符；本地文件以file:///开头，其他按fs.defaultFS解析
+	 * @return	导入的行数（包括此前中断时已完成的文件）
+	 */
+	public long load(String... inputPaths) throws IOException{
+
+		final Configuration conf = new Configuration(conn.getConfiguration());
+		conf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);	//写HFile不使用块缓存
+		final FileSystem stagingFs = hfileDir.getFileSystem(conf);
+
+		final List<Path> files = listInputs(conf, inputPaths);
+		inputFiles = files.size();
+
+		final byte[][] startKeys;
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try{
+			startKeys = locator.getStartKeys();
+		}finally{
+			locator.close();
+		}
+		final HColumnDescriptor descriptor;
+		Table table = HBaseDao.getTable(tableName.getNameAsString());
+		try{
+			descriptor = table.getTableDescriptor().getFamily(family);
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+
+		//工作线程按顺序领取输入文件
+		final long timestamp = System.currentTimeMillis();
+		runParallel(files.size(), new IndexedTask(){
+			@Override
+			public void run(int index) throws IOException{
+				writeHFiles(conf, stagingFs, files.get(index), startKeys, descriptor, timestamp);
+			}
+		});
+
+		//同一Region的HFile归并为一个
+		final List<List<Path>> groups = groupByRegion(stagingFs);
+		runParallel(groups.size(), new IndexedTask(){
+			@Override
+			public void run(int index) throws IOException{
+				mergeHFiles(conf, stagingFs, groups.get(index), descriptor);
+			}
+		});
+		hfiles.set(groups.size());
+
+		//HFile整体移入Region，Region在此期间分裂时由LoadIncrementalHFiles切分HFile
+		if(stagingFs.exists(hfileDir)){
+			LoadIncrementalHFiles loader;
+			try{
+				loader = new LoadIncrementalHFiles(conf);
+			}catch(Exception e){
+				throw HBaseDao.toIOException(e);
+			}
+			Admin admin = conn.getAdmin();
+			table = conn.getTable(tableName);
+			locator = conn.getRegionLocator(tableName);
+			try{
+				loader.doBulkLoad(hfileDir, admin, table, locator);
+			}finally{
+				locator.close();
+				table.close();
+				admin.close();
+			}
+			HBaseDao.invalidateTable(tableName);
+		}
+		stagingFs.delete(hfileDir.getParent(), true);
+		return rows.get();
+	}
+
+	/**
+	 * 按下标执行的任务
+	 */
+	private interface IndexedTask{
+		void run(int index) throws IOException;
+	}
+
+	/**
+	 * 最多parallelism个工作线程按顺序领取下标[0, count)执行任务，一个任务失败时其他线程完成当前任务后退出
+	 * 不中断工作线程，避免中断HDFS/HBase客户端的I/O线程
+	 */
+	private void runParallel(final int count, final IndexedTask task) throws IOException{
+
+		final AtomicInteger next = new AtomicInteger();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(int i = 0; i < Math.min(parallelism, count); i++){
+			futures.add(pool.submit(new Callable<Void>(){
+				@Override
+				public Void call() throws IOException{
+					int index;
+					while((index = next.getAndIncrement()) < count){
+						task.run(index);
+					}
+					return null;
+				}
+			}));
+		}
+		IOException error = null;
+		try{
+			for(Future<Void> future : futures){
+				try{
+					future.get();
+				}catch(ExecutionException e){
+					if(null==error){
+						error = HBaseDao.toIOException(e.getCause());
+						next.set(count);		//其他线程处理完当前任务后退出
+					}
+				}
+			}
+		}catch(InterruptedException e){
+			next.set(count);
+			for(Future<Void> future : futures){
+				future.cancel(false);		//未开始的不再执行，执行中的完成当前任务后退出
+			}
+			throw (InterruptedIOException) new InterruptedIOException("批量导入被中断").initCause(e);
+		}
+		if(null!=error){
+			throw error;
+		}
+	}
+
+	/**
+	 * 展开输入路径中的目录和通配符
+	 */
+	private static List<Path> listInputs(Configuration conf, String[] inputPaths) throws IOException{
+
+		List<Path> files = new ArrayList<Path>();
+		for(String input : inputPaths){
+			Path path = new Path(input);
+			FileSystem fs = path.getFileSystem(conf);
+			FileStatus[] matches = fs.globStatus(path);
+			if(null==matches || 0==matches.length){
+				throw new FileNotFoundException("输入文件不存在：" + input);
+			}
+			for(FileStatus match : matches){
+				FileStatus[] statuses = match.isDirectory() ? fs.listStatus(match.getPath()) : new FileStatus[]{ match };
+				for(FileStatus status : statuses){
+					String name = status.getPath().getName();
+					if(status.isFile() && !name.startsWith("_") && !name.startsWith(".")){
+						files.add(status.getPath());
+					}
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * 解析一个输入文件，按Region分区写出HFile，完成后写入完成标记
+	 */
+	private void writeHFiles(Configuration conf, FileSystem stagingFs, Path input, byte[][] startKeys, HColumnDescriptor descriptor, long timestamp) throws IOException{
+
+		String id = MD5Hash.getMD5AsHex(Bytes.toBytes(input.toString()));
+		Path marker = new Path(progressDir, id);
+		if(stagingFs.exists(marker)){
+			resume(stagingFs, marker);
+			return;
+		}
+
+		//清理上次中断时该文件已写出的部分HFile
+		Path familyDir = new Path(hfileDir, Bytes.toString(family));
+		FileStatus[] partial = stagingFs.globStatus(new Path(familyDir, id + "_*"));
+		if(null!=partial){
+			for(FileStatus status : partial){
+				stagingFs.delete(status.getPath(), false);
+			}
+		}
+
+		char separator = (null!=delimiter) ? delimiter : (input.getName().endsWith(".tsv") ? '\t' : ',');
+		Pattern splitter = Pattern.compile(Pattern.quote(String.valueOf(separator)));
+
+		List<List<KeyValue>> partitions = new ArrayList<List<KeyValue>>(startKeys.length);
+		for(int i = 0; i < startKeys.length; i++){
+			partitions.add(new ArrayList<KeyValue>());
+		}
+		long[] sizes = new long[startKeys.length];
+		long buffered = 0;
+		int seq = 0;
+		long fileRows = 0, fileCells = 0, fileSkipped = 0;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input.getFileSystem(conf).open(input), StandardCharsets.UTF_8));
+		try{
+			String line;
+			boolean header = skipHeader;
+			while(null!=(line = reader.readLine())){
+				if(header){
+					header = false;
+					continue;
+				}
+				String[] fields = splitter.split(line, -1);
+				if(fields.length < 2 || fields[0].isEmpty()){
+					fileSkipped++;
+					continue;
+				}
+				byte[] row = codec.encode(Bytes.toBytes(fields[0]));
+				int region = regionOf(startKeys, row);
+				int added = 0;
+				for(int i = 1; i < fields.length && i <= columns.length; i++){
+					if(fields[i].isEmpty()){
+						continue;
+					}
+					KeyValue kv = new KeyValue(row, family, columns[i - 1], timestamp, Bytes.toBytes(fields[i]));
+					partitions.get(region).add(kv);
+					sizes[region] += kv.getLength();
+					buffered += kv.getLength();
+					added++;
+				}
+				if(0==added){
+					fileSkipped++;
+					continue;
+				}
+				fileRows++;
+				fileCells += added;
+
+				//缓冲区满时依次写出最大的分区，直到降至一半以下
+				if(buffered <= bufferSize){
+					continue;
+				}
+				while(buffered > bufferSize / 2){
+					int largest = 0;
+					for(int i = 1; i < sizes.length; i++){
+						if(sizes[i] > sizes[largest]){
+							largest = i;
+						}
+					}
+					writeHFile(conf, stagingFs, partitions.get(largest), new Path(familyDir, id + "_" + largest + "_" + (seq++)), descriptor);
+					buffered -= sizes[largest];
+					sizes[largest] = 0;
+					partitions.set(largest, new ArrayList<KeyValue>());
+				}
+			}
+		}finally{
+			reader.close();
+		}
+		for(int i = 0; i < partitions.size(); i++){
+			if(!partitions.get(i).isEmpty()){
+				writeHFile(conf, stagingFs, partitions.get(i), new Path(familyDir, id + "_" + i + "_" + (seq++)), descriptor);
+			}
+		}
+
+		//完成标记中记录统计信息，续传时累计
+		FSDataOutputStream out = stagingFs.create(marker, true);
+		try{
+			out.writeLong(fileRows);
+			out.writeLong(fileCells);
+			out.writeLong(fileSkipped);
+		}finally{
+			out.close();
+		}
+		rows.addAndGet(fileRows);
+		cells.addAndGet(fileCells);
+		skippedLines.addAndGet(fileSkipped);
+		completedFiles.incrementAndGet();
+	}
+
+	/**
+	 * 跳过已完成的输入文件，累计其统计信息
+	 */
+	private void resume(FileSystem stagingFs, Path marker) throws IOException{
+
+		FSDataInputStream in = stagingFs.open(marker);
+		try{
+			rows.addAndGet(in.readLong());
+			cells.addAndGet(in.readLong());
+			skippedLines.addAndGet(in.readLong());
+		}finally{
+			in.close();
+		}
+		resumedFiles.incrementAndGet();
+		completedFiles.incrementAndGet();
+	}
+
+	/**
+	 * 行键所在Region的下标，startKeys升序且第一个为空
+	 */
+	private static int regionOf(byte[][] startKeys, byte[] row){
+
+		int low = 0, high = startKeys.length - 1;
+		while(low < high){
+			int mid = (low + high + 1) >>> 1;
+			if(Bytes.compareTo(startKeys[mid], row) <= 0){
+				low = mid;
+			}else{
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 排序后写出一个HFile
+	 */
+	private void writeHFile(Configuration conf, FileSystem fs, List<KeyValue> kvs, Path path, HColumnDescriptor descriptor) throws IOException{
+
+		Collections.sort(kvs, KeyValue.COMPARATOR);		//稳定排序，相同{行,列}中文件靠后的值排在后面
+
+		StoreFile.Writer writer = createWriter(conf, fs, path, descriptor);
+		try{
+			for(int i = 0; i < kvs.size(); i++){
+				if(i + 1 < kvs.size() && 0==KeyValue.COMPARATOR.compare(kvs.get(i), kvs.get(i + 1))){
+					continue;		//重复的{行,列}只保留最后一个
+				}
+				writer.append(kvs.get(i));
+			}
+			appendFileInfo(writer, path);
+		}finally{
+			writer.close();
+		}
+	}
+
+	/**
+	 * 列出暂存的HFile，按文件名中的Region下标分组
+	 * 文件名为：输入文件ID_Region下标_序号，或归并结果 merged_Region下标_时间戳
+	 */
+	private List<List<Path>> groupByRegion(FileSystem fs) throws IOException{
+
+		Map<String, List<Path>> groups = new TreeMap<String, List<Path>>();
+		Path familyDir = new Path(hfileDir, Bytes.toString(family));
+		if(fs.exists(familyDir)){
+			for(FileStatus status : fs.listStatus(familyDir)){
+				String[] parts = status.getPath().getName().split("_");
+				String region = (3==parts.length) ? parts[1] : status.getPath().getName();		//无法识别的文件单独一组，不参与归并
+				List<Path> group = groups.get(region);
+				if(null==group){
+					group = new ArrayList<Path>();
+					groups.put(region, group);
+				}
+				group.add(status.getPath());
+			}
+		}
+		for(List<Path> group : groups.values()){
+			Collections.sort(group, new Comparator<Path>(){
+				@Override
+				public int compare(Path a, Path b){
+					String[] x = a.getName().split("_"), y = b.getName().split("_");
+					int c = x[0].compareTo(y[0]);
+					return (0!=c || x.length < 3 || y.length < 3) ? c : Long.compare(Long.parseLong(x[2]), Long.parseLong(y[2]));		//同一输入文件按写出顺序
+				}
+			});
+		}
+		return new ArrayList<List<Path>>(groups.values());
+	}
+
+	/**
+	 * 把同一Region的多个已排序HFile多路归并为一个，先写入归并目录，完成后移入列族目录再删除原文件
+	 * 中断后重新执行时，已移入的归并结果与残留的原文件再次归并，重复的Cell只保留一个
+	 */
+	private void mergeHFiles(Configuration conf, FileSystem fs, List<Path> sources, HColumnDescriptor descriptor) throws IOException{
+
+		if(sources.size() < 2){
+			return;
+		}
+		String region = sources.get(0).getName().split("_")[1];
+		String name = MERGED_PREFIX + "_" + region + "_" + System.currentTimeMillis();
+		Path tmp = new Path(mergeDir, name);
+		CacheConfig cacheConfig = new CacheConfig(conf);
+
+		List<HFile.Reader> readers = new ArrayList<HFile.Reader>();
+		try{
+			PriorityQueue<MergeHead> heads = new PriorityQueue<MergeHead>();
+			for(int i = 0; i < sources.size(); i++){
+				HFile.Reader reader = HFile.createReader(fs, sources.get(i), cacheConfig, conf);
+				readers.add(reader);
+				reader.loadFileInfo();
+				HFileScanner scanner = reader.getScanner(false, false);
+				if(scanner.seekTo()){
+					heads.add(new MergeHead(scanner, i));
+				}
+			}
+			StoreFile.Writer writer = createWriter(conf, fs, tmp, descriptor);
+			try{
+				KeyValue last = null;
+				MergeHead head;
+				while(null!=(head = heads.poll())){
+					if(null==last || 0!=KeyValue.COMPARATOR.compare(last, head.current)){
+						writer.append(head.current);		//相同的{行,列,时间戳}只写第一个，即序号最大的文件中的值
+						last = head.current;
+					}
+					if(head.advance()){
+						heads.add(head);
+					}
+				}
+				appendFileInfo(writer, tmp);
+			}finally{
+				writer.close();
+			}
+		}finally{
+			for(HFile.Reader reader : readers){
+				reader.close(false);
+			}
+		}
+		Path target = new Path(sources.get(0).getParent(), name);
+		if(!fs.rename(tmp, target)){
+			throw new IOException("归并后的HFile无法移入：" + tmp + " -> " + target);
+		}
+		for(Path source : sources){
+			fs.delete(source, false);
+		}
+	}
+
+	/**
+	 * 归并中一个HFile的当前Cell，按Cell顺序排列，相同时序号大的在前
+	 */
+	private static final class MergeHead implements Comparable<MergeHead>{
+
+		private final HFileScanner scanner;
+		private final int order;
+		private KeyValue current;
+
+		MergeHead(HFileScanner scanner, int order){
+			this.scanner = scanner;
+			this.order = order;
+			this.current = KeyValueUtil.copyToNewKeyValue(scanner.getKeyValue());
+		}
+
+		boolean advance() throws IOException{
+			if(!scanner.next()){
+				return false;
+			}
+			current = KeyValueUtil.copyToNewKeyValue(scanner.getKeyValue());		//扫描器复用缓冲区，须复制
+			return true;
+		}
+
+		@Override
+		public int compareTo(MergeHead other){
+			int c = KeyValue.COMPARATOR.compare(current, other.current);
+			return (0!=c) ? c : Integer.compare(other.order, order);
+		}
+	}
+
+	/**
+	 * 创建HFile写入器，压缩、块大小、编码、布隆过滤器与列族设置一致
+	 */
+	private static StoreFile.Writer createWriter(Configuration conf, FileSystem fs, Path path, HColumnDescriptor descriptor) throws IOException{
+
+		HFileContext context = new HFileContextBuilder()
+				.withCompression(descriptor.getCompressionType())
+				.withBlockSize(descriptor.getBlocksize())
+				.withDataBlockEncoding(descriptor.getDataBlockEncoding())
+				.build();
+		return new StoreFile.WriterBuilder(conf, new CacheConfig(conf), fs)
+				.withFilePath(path)
+				.withComparator(KeyValue.COMPARATOR)
+				.withBloomType(descriptor.getBloomFilterType())
+				.withFileContext(context)
+				.build();
+	}
+
+	private static void appendFileInfo(StoreFile.Writer writer, Path path) throws IOException{
+
+		writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+		writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(path.getName()));
+		writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(false));
+		writer.appendTrackedTimestampsToMetadata();
+	}
+
+	/**
+	 * 导入的行数
+	 */
+	public long getRowCount(){
+		return rows.get();
+	}
+
+	/**
+	 * 导入的Cell数
+	 */
+	public long getCellCount(){
+		return cells.get();
+	}
+
+	/**
+	 * 格式不正确或没有值而跳过的行数
+	 */
+	public long getSkippedLines(){
+		return skippedLines.get();
+	}
+
+	/**
+	 * 归并后移入Region的HFile数，每个Region一个
+	 */
+	public int getHFileCount(){
+		return hfiles.get();
+	}
+
+	/**
+	 * 输入文件总数，展开目录和通配符后得出
+	 */
+	public int getInputFiles(){
+		return inputFiles;
+	}
+
+	/**
+	 * 已处理完成的输入文件数（包括续传跳过的），与getInputFiles相比即为解析进度
+	 */
+	public int getCompletedFiles(){
+		return completedFiles.get();
+	}
+
+	/**
+	 * 因此前已完成而跳过解析的文件数
+	 */
+	public int getResumedFiles(){
+		return resumedFiles.get();
+	}
+
+	@Override
+	public String toString(){
+		return "表" + tableName + "批量导入：" + getRowCount() + "行，" + getCellCount() + "个Cell，跳过" + getSkippedLines() + "行，生成HFile" + getHFileCount() + "个，续传跳过" + getResumedFiles() + "个文件";
+	}
+}
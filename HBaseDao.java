@@ -1,293 +1,1137 @@
-package com.cp.hbase;
-
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.CellUtil;
-import org.apache.hadoop.hbase.HBaseConfiguration;
-import org.apache.hadoop.hbase.HColumnDescriptor;
-import org.apache.hadoop.hbase.HTableDescriptor;
-import org.apache.hadoop.hbase.MasterNotRunningException;
-import org.apache.hadoop.hbase.TableName;
-import org.apache.hadoop.hbase.ZooKeeperConnectionException;
-import org.apache.hadoop.hbase.client.Append;
-import org.apache.hadoop.hbase.client.Connection;
-import org.apache.hadoop.hbase.client.ConnectionFactory;
-import org.apache.hadoop.hbase.client.Delete;
-import org.apache.hadoop.hbase.client.Get;
-import org.apache.hadoop.hbase.client.HBaseAdmin;
-import org.apache.hadoop.hbase.client.HTable;
-import org.apache.hadoop.hbase.client.Put;
-import org.apache.hadoop.hbase.client.Result;
-import org.apache.hadoop.hbase.client.ResultScanner;
-import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.util.Bytes;
-
-
-public class HBaseDao {
-
-	 private static Configuration conf = null;
-	 private static Connection conn = null;
-	 private static HBaseAdmin admin = null;
-	 private static HTable table = null;
-	
-	/**
-	 * 读取HBase配置
-	 * 创建HBase数据库连接实例conn
-	 * 获取HBase数据库管理员操作对象admin 
-	 */
-	public static void init() throws Exception{
-
-		conf = HBaseConfiguration.create();
-		conf.set("hbase.zookeeper.quorum", "master:2181,slave1:2181,slave2:2181"); //zookeeper集群节点
-		
-		conn = ConnectionFactory.createConnection(conf);
-		admin = (HBaseAdmin)conn.getAdmin();
-	}
-	
-	/**
-	 * 关闭数据库连接 
-	 */
-	public static void end() throws IOException{
-		
-		if(null!=table){
-			table.close();
-		}
-		
-		if(null!=admin){		
-			admin.close();
-		}
-		if(null!=conn){
-			conn.close();
-		}
-	}
-	
-	/**  DDL CREATE 创建表
-	 *  创建表（HBase创建表需至少指定一个列族columnFamily） 
-	 * @param tableName	表名
-	 * @param columnFamilies	列族名数组，可指定至少1个
-	 */
-	public static void createTable(String tableName, String[] columnFamilies) throws MasterNotRunningException, ZooKeeperConnectionException, Exception{ 
-
-		//判断表是否存在
-		if(admin.tableExists(tableName)){
-			System.out.println("表"+ tableName +"已存在！");
-			System.exit(0);
-		}
-		
-		//描述要创建的表
-		HTableDescriptor tableDesc = new HTableDescriptor(TableName.valueOf(tableName));	
-			
-		for(String columnFamily : columnFamilies){		
-			tableDesc.addFamily(new HColumnDescriptor(columnFamily));	
-		}
-		admin.createTable(tableDesc);
-		System.out.println(tableName+"表创建成功！");
-	}
-
-	
-	/**  DDL ALTER 修改表
-	 *  修改表，增加至少一个表列族
-	 * @param tableName	表名
-	 * @param columnFamilies	列族数组
-	 */
-	public static void addColumnFamilies(String tableName, String[] columnFamilies) throws IOException{
-		
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表操作句柄
-			
-		//描述待增加的表列族，并新增
-		HTableDescriptor desc = new HTableDescriptor(table.getTableDescriptor());
-		for(String cf : columnFamilies){
-			desc.addFamily(new HColumnDescriptor(Bytes.toBytes(cf)));
-		}
-			
-		admin.disableTable(tableName);  
-		admin.modifyTable(Bytes.toBytes(tableName), desc);  
-		admin.enableTable(tableName);
-			
-	}
-	
-	/**  DDL ALTER 修改表
-	 * 	修改表，删除一个表列族
-	 * @param tableName	表名
-	 * @param columnFamily	列族
-	 */
-	public static void deleteColumnFamily(String tableName, String columnFamily) throws IOException{
-		
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		admin.deleteColumn(tableName, columnFamily);
-		
-	}
-
-	/**  DDL DELETE 删除表
-	 *  删除表
-	 * @param tableName	表名
-	 */
-	public static void deleteTable(String tableName) throws IOException{
-		
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		admin.disableTable(tableName);
-		admin.deleteTable(tableName);
-		System.out.println("表" + tableName + "删除成功！");
-			
-	}
-	
-	
-	/** DML 增
-	 * 	增添数据，增添数据至指定的“cell”中
-	 * @param tableName	表名
-	 * @param rowKey	行键
-	 * @param columnFamily	列族
-	 * @param column	列名
-	 * @param value	添加的数据
-	 */
-	public static void addRow(String tableName, String rowKey, String columnFamily, String column, String value) throws IOException{
-
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表的操作句柄
-		
-		//描述数据的增添（put之前应该检查是否存在表、列族）
-		Put put = new Put(Bytes.toBytes(rowKey));	
-		put.addColumn(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
-		table.put(put);
-		
-	}
-	
-	/**  DML 删
-	 *  删除数据，删除某行记录
-	 * @param tableName	表名
-	 * @param rowKey	行键
-	 */
-	public static void deleteRow(String tableName, String rowKey) throws IOException{
-
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表的操作句柄
-		
-		//描述待删除的数据
-		Delete delete =  new Delete(Bytes.toBytes(rowKey));
-		table.delete(delete);
-		
-	}
-	
-	/**  DML 删
-	 *  删除数据，删除多行记录
-	 * @param tableName	表名
-	 * @param rowKeys	行键数组
-	 */
-	public static void deleteRows(String tableName, String[] rowKeys) throws IOException{
-
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表操作句柄
-		
-		//创建一个数据删除描述List，用于存放待删除的多行记录描述
-		List<Delete> deleteList = new ArrayList<Delete>();
-		for(String rowkey : rowKeys){
-			Delete delete = new Delete(Bytes.toBytes(rowkey));
-			deleteList.add(delete);
-		}
-		table.delete(deleteList);
-		
-	}	
-	
-	/**	DML 查
-	 *  查询数据，查询指定行的记录
-	 * @param tableName	表名
-	 * @param rowKey 行键
-	 */
-	public static void getRow(String tableName, String rowKey) throws IOException{
-		
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表的操作句柄
-		
-		//描述待查询的数据行
-		Get get = new Get(Bytes.toBytes(rowKey));
-			
-		//获取行记录，通过rawcell()方法获取cell，再通过CellUtil工具遍历cell中的属性值
-		Result result = table.get(get);		
-		for(Cell cell : result.rawCells()){	 
-			System.out.println(
-				"行键："+ Bytes.toString(CellUtil.cloneRow(cell)) + "\t" +
-				"列族："+ Bytes.toString(CellUtil.cloneFamily(cell)) + "\t" +
-				"列："+ Bytes.toString(CellUtil.cloneQualifier(cell)) + "\t" +
-				"值："+ Bytes.toString(CellUtil.cloneValue(cell)) + "\t" +
-				"时间戳："+ cell.getTimestamp()
-			);
-		}
-	}
-	
-	/** DML 查
-	 *  查询数据，查询整个表的行记录
-	 * @param tableName	表名
-	 */
-	public static void scanTable(String tableName) throws IOException{
-
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表的操作句柄
-		
-		Scan scan = new Scan();	//创建一个表扫描对象
-
-		//获取扫描到的所有行记录，逐行记录逐个cell遍历
-		ResultScanner results = table.getScanner(scan);
-		for(Result result : results){				
-			for(Cell cell : result.rawCells()){				
-				System.out.println(								
-						"行键：" + Bytes.toString(CellUtil.cloneRow(cell)) + "\t" +
-						"列族：" + Bytes.toString(CellUtil.cloneFamily(cell)) + "\t" +
-						"列：" + Bytes.toString(CellUtil.cloneQualifier(cell)) + "\t" +
-						"值："+ Bytes.toString(CellUtil.cloneValue(cell)) + "\t" +
-						"时间戳：" + cell.getTimestamp()
-						);
-			}
-		}
-		//关闭扫描结果接收对象
-		results.close();
-	}
-	
-	/**  DML 改 
-	 *  追加数据，追加数据至指定cell中
-	 * @param tableName	表名
-	 * @param rowKey	行键
-	 * @param columnFamily	列族
-	 * @param column	列
-	 * @param value 值
-	 */
-	public static void appendData(String tableName, String rowKey, String columnFamily, String column, String value) throws IOException{
-
-		HBaseDao.checkTable(tableName);	//判断表是否存在
-		
-		table = (HTable) conn.getTable(TableName.valueOf(tableName));	//获取表操作句柄
-		
-		//描述待追加的数据
-		Append append = new Append(Bytes.toBytes(rowKey));
-		append.add(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
-		
-		table.append(append);
-		
-	}
-	
-	/**
-	 * 判断表是否存在
-	 * @param tableName	表名
-	 */
-	public static void checkTable(String tableName) throws IOException{
-		//判断表是否存在
-		if(!admin.tableExists(tableName)){
-			System.out.println("表"+ tableName +"不存在！");
-			System.exit(0);
-		}
-	}
-	
-	
-}
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.InvalidFamilyOperationException;
+import org.apache.hadoop.hbase.MasterNotRunningException;
+import org.apache.hadoop.hbase.TableExistsException;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.ZooKeeperConnectionException;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
+import org.apache.hadoop.hbase.regionserver.NoSuchColumnFamilyException;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.cp.metrics.Metrics;
+
+
+public class HBaseDao {
+
+	 private static volatile Configuration conf = null;
+	 private static volatile Connection conn = null;
+	 private static volatile HBaseAdmin admin = null;
+	 
+	 //表操作句柄缓存，按表名缓存空闲的Table句柄；Table本身非线程安全，每个线程借出独占使用，用完归还
+	 private static final ConcurrentMap<TableName, Queue<Table>> tables = new ConcurrentHashMap<TableName, Queue<Table>>();
+	 
+	 //表元数据缓存，避免每次数据操作前都向HMaster确认表是否存在
+	 private static volatile TableMetaCache metaCache = null;
+	 
+	 //各表的行键编解码器，未设置的表不编码
+	 private static final ConcurrentMap<TableName, RowKeyCodec> rowKeyCodecs = new ConcurrentHashMap<TableName, RowKeyCodec>();
+	 
+	 //客户端行缓存，未启用时为null
+	 private static volatile RowCache rowCache = null;
+	 
+	 //并行扫描等并发操作使用的工作线程池
+	 private static volatile ExecutorService workers = null;
+	 
+	 private static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;		//批量写入器默认定时刷写间隔
+	 
+	 public static final String META_CACHE_TTL_KEY = "cp.hbase.meta.cache.ttl.ms";		//表元数据缓存有效期配置项
+	 private static final long DEFAULT_META_CACHE_TTL_MS = 60000;
+	 
+	 private static final long DEFAULT_ALTER_TIMEOUT_MS = 10 * 60 * 1000;		//同步增加列族时等待各Region应用变更的默认超时
+	 
+	 private static final int DEFAULT_ACCUMULATOR_MAX_KEYS = 100000;		//计数累加器待提交的最大{行,列}数
+	 
+	 private static final int DEFAULT_DELETE_BATCH_SIZE = 1000;		//范围删除每次提交的Delete数
+	 
+	 private static final int MULTI_GET_BATCH_SIZE = 500;		//批量查询每个RPC包含的最大Get数，超过时按Region分组并行查询
+	 
+	 public static final String WORKER_THREADS_KEY = "cp.hbase.worker.threads";		//工作线程数配置项，默认为CPU核数的2倍
+	
+	/**
+	 * 读取HBase配置
+	 * 创建HBase数据库连接实例conn
+	 * 获取HBase数据库管理员操作对象admin 
+	 */
+	public static synchronized void init() throws Exception{
+
+		Configuration conf = HBaseConfiguration.create();
+		conf.set("hbase.zookeeper.quorum", "master:2181,slave1:2181,slave2:2181"); //zookeeper集群节点
+		HBaseDao.init(conf);
+	}
+	
+	/**
+	 * 使用指定配置连接HBase，如连接进程内的测试集群
+	 * @param configuration	HBase配置
+	 */
+	public static synchronized void init(Configuration configuration) throws IOException{
+
+		conf = configuration;
+		conn = ConnectionFactory.createConnection(conf);
+		admin = (HBaseAdmin)conn.getAdmin();
+		metaCache = new TableMetaCache(admin, conf.getLong(META_CACHE_TTL_KEY, DEFAULT_META_CACHE_TTL_MS));
+		
+		final AtomicInteger threadId = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(conf.getInt(WORKER_THREADS_KEY, 2 * Runtime.getRuntime().availableProcessors()), new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "hbase-dao-worker-" + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * 设置表元数据缓存有效期，并清空已有缓存
+	 * @param ttlMs	有效期（毫秒），小于等于0时不缓存，每次都向HMaster确认
+	 */
+	public static void setMetaCacheTtl(long ttlMs){
+		metaCache.setTtl(ttlMs);
+	}
+	
+	/**
+	 * 关闭数据库连接 
+	 */
+	public static synchronized void end() throws IOException{
+		
+		if(null!=workers){
+			workers.shutdownNow();
+			workers = null;
+		}
+		
+		//关闭缓存的表操作句柄
+		for(Queue<Table> idle : tables.values()){
+			Table table;
+			while(null!=(table = idle.poll())){
+				table.close();
+			}
+		}
+		tables.clear();
+		
+		if(null!=metaCache){
+			metaCache.clear();
+			metaCache = null;
+		}
+		if(null!=admin){		
+			admin.close();
+			admin = null;
+		}
+		if(null!=conn){
+			conn.close();
+			conn = null;
+		}
+	}
+	
+	/**
+	 * 设置表的行键编解码器，此后该表的增删改查及扫描均按编解码器转换行键
+	 * 扫描结果中的行键为物理行键，可通过decodeRow还原
+	 * @param tableName	表名
+	 * @param codec	行键编解码器，为null时取消编码
+	 */
+	public static void setRowKeyCodec(String tableName, RowKeyCodec codec){
+		if(null==codec){
+			rowKeyCodecs.remove(TableName.valueOf(tableName));
+		}else{
+			rowKeyCodecs.put(TableName.valueOf(tableName), codec);
+		}
+	}
+	
+	/**
+	 * 获取表的行键编解码器，未设置时返回RowKeyCodec.IDENTITY
+	 * @param tableName	表名
+	 */
+	public static RowKeyCodec getRowKeyCodec(String tableName){
+		RowKeyCodec codec = rowKeyCodecs.get(TableName.valueOf(tableName));
+		return (null==codec) ? RowKeyCodec.IDENTITY : codec;
+	}
+	
+	/**
+	 * 逻辑行键 -> 物理行键
+	 * @param tableName	表名
+	 * @param rowKey	逻辑行键
+	 */
+	public static byte[] encodeRow(String tableName, String rowKey){
+		return HBaseDao.getRowKeyCodec(tableName).encode(Bytes.toBytes(rowKey));
+	}
+	
+	/**
+	 * 物理行键 -> 逻辑行键，用于还原扫描结果中的行键
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 */
+	public static String decodeRow(String tableName, byte[] row){
+		return Bytes.toString(HBaseDao.getRowKeyCodec(tableName).decode(row));
+	}
+	
+	/**
+	 * 启用客户端行缓存，getResult、getRow及查询整行的getRows优先从缓存读取
+	 * 通过本类及HBaseWriter、AsyncHBaseDao写入、删除、追加时自动使对应行的缓存失效
+	 * @param maxBytes	缓存占用的最大字节数
+	 * @param ttlMs	缓存项有效期（毫秒），其他客户端写入的数据最多延迟该时间可见
+	 * @param offHeap	是否将序列化后的行记录存放在堆外直接内存，启用时一次性分配maxBytes直接内存
+	 */
+	public static void enableRowCache(long maxBytes, long ttlMs, boolean offHeap){
+		rowCache = new RowCache(maxBytes, ttlMs, offHeap);
+	}
+	
+	/**
+	 * 停用客户端行缓存
+	 */
+	public static void disableRowCache(){
+		rowCache = null;
+	}
+	
+	/**
+	 * 获取客户端行缓存，用于查看命中、未命中、淘汰次数等统计；未启用时返回null
+	 */
+	public static RowCache getRowCache(){
+		return rowCache;
+	}
+	
+	/**
+	 * 使指定行的行缓存失效
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 */
+	static void invalidateRow(TableName tableName, byte[] row){
+		RowCache cache = rowCache;
+		if(null!=cache){
+			cache.invalidate(tableName, row);
+		}
+	}
+	
+	/**
+	 * 使指定表的行缓存全部失效，用于批量导入等绕过写入路径的操作
+	 * @param tableName	表名
+	 */
+	static void invalidateTable(TableName tableName){
+		RowCache cache = rowCache;
+		if(null!=cache){
+			cache.invalidate(tableName);
+		}
+	}
+	
+	/**  DDL CREATE 创建表
+	 *  创建表（HBase创建表需至少指定一个列族columnFamily） 
+	 * @param tableName	表名
+	 * @param columnFamilies	列族名数组，可指定至少1个
+	 * @throws TableExistsException	表已存在
+	 */
+	public static void createTable(String tableName, String[] columnFamilies) throws MasterNotRunningException, ZooKeeperConnectionException, Exception{ 
+		HBaseDao.createTable(tableName, FamilyOptions.of(columnFamilies), null);
+	}
+	
+	/**  DDL CREATE 创建表
+	 *  创建预分区表，并指定各列族的压缩、布隆过滤器、数据块编码等参数
+	 * @param tableName	表名
+	 * @param families	列族参数数组，可指定至少1个
+	 * @param splitKeys	预分区切分点，可由SplitKeys生成；为null时只创建一个Region
+	 * @throws TableExistsException	表已存在
+	 */
+	public static void createTable(String tableName, FamilyOptions[] families, byte[][] splitKeys) throws IOException{ 
+
+		//描述要创建的表
+		HTableDescriptor tableDesc = new HTableDescriptor(TableName.valueOf(tableName));	
+			
+		for(FamilyOptions family : families){		
+			tableDesc.addFamily(family.toDescriptor());	
+		}
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			//判断表是否存在
+			if(admin.tableExists(tableName)){
+				throw new TableExistsException("表"+ tableName +"已存在！");
+			}
+			if(null==splitKeys || 0==splitKeys.length){
+				admin.createTable(tableDesc);
+			}else{
+				admin.createTable(tableDesc, splitKeys);
+			}
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.createTable", tableName, start, success);
+		}
+		metaCache.invalidate(tableDesc.getTableName());
+		System.out.println(tableName+"表创建成功！");
+	}
+
+	
+	/**  DDL ALTER 修改表
+	 *  修改表，增加至少一个表列族，在线变更，不禁用表；等待各Region应用变更，超过DEFAULT_ALTER_TIMEOUT_MS未完成时抛出异常
+	 * @param tableName	表名
+	 * @param columnFamilies	列族数组
+	 * @throws TimeoutIOException	等待超时，cause为TimeoutException；变更已提交，HMaster会继续应用
+	 */
+	public static void addColumnFamilies(String tableName, String[] columnFamilies) throws IOException{
+		
+		SchemaChange change = HBaseDao.addColumnFamilies(tableName, FamilyOptions.of(columnFamilies));
+		if(!change.await(DEFAULT_ALTER_TIMEOUT_MS)){
+			String message = change + "，超过" + DEFAULT_ALTER_TIMEOUT_MS + "毫秒未完成";
+			throw (TimeoutIOException) new TimeoutIOException(message).initCause(new TimeoutException(message));
+		}
+			
+	}
+	
+	/**  DDL ALTER 修改表
+	 *  在线增加列族，请求提交后立即返回，表在各Region重新打开期间保持可读写
+	 *  所有列族通过一次modifyTable提交，要么全部增加，要么都不增加
+	 * @param tableName	表名
+	 * @param families	列族及其参数
+	 * @return	变更进度
+	 * @throws InvalidFamilyOperationException	列族已存在
+	 */
+	public static SchemaChange addColumnFamilies(String tableName, FamilyOptions[] families) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		TableName name = TableName.valueOf(tableName);
+		StringBuilder names = new StringBuilder();
+		HColumnDescriptor[] added = new HColumnDescriptor[families.length];
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			HTableDescriptor desc = new HTableDescriptor(admin.getTableDescriptor(name));
+			for(int i = 0; i < families.length; i++){
+				added[i] = families[i].toDescriptor();
+				if(desc.hasFamily(added[i].getName())){
+					throw new InvalidFamilyOperationException("表"+ tableName +"已存在列族"+ families[i].getName());
+				}
+				desc.addFamily(added[i]);
+				names.append(names.length() > 0 ? "," : "").append(families[i].getName());
+			}
+			admin.modifyTable(name, desc);
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.addColumn", tableName, start, success);
+			metaCache.invalidate(name);
+		}
+		return new SchemaChange(admin, name, "增加列族" + names, added, null);
+	}
+	
+	/**  DDL ALTER 修改表
+	 *  在线修改列族的压缩、数据块编码、TTL等属性，未设置的属性保持不变
+	 *  新属性在Region重新打开后生效，已有HFile在合并时按新属性重写
+	 * @param tableName	表名
+	 * @param family	列族及待修改的参数
+	 * @return	变更进度
+	 */
+	public static SchemaChange modifyColumnFamily(String tableName, FamilyOptions family) throws IOException{
+		
+		HBaseDao.checkFamily(tableName, family.getName());	//判断表、列族是否存在
+		
+		TableName name = TableName.valueOf(tableName);
+		HColumnDescriptor modified;
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			HColumnDescriptor desc = new HColumnDescriptor(admin.getTableDescriptor(name).getFamily(Bytes.toBytes(family.getName())));
+			modified = family.applyTo(desc);
+			admin.modifyColumn(name, modified);
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.modifyColumn", tableName, start, success);
+		}
+		return new SchemaChange(admin, name, "修改列族" + family.getName(), new HColumnDescriptor[]{modified}, null);
+	}
+	
+	/**  DDL ALTER 修改表
+	 * 	修改表，在线删除一个表列族
+	 * @param tableName	表名
+	 * @param columnFamily	列族
+	 * @return	变更进度
+	 */
+	public static SchemaChange deleteColumnFamily(String tableName, String columnFamily) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		TableName name = TableName.valueOf(tableName);
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			admin.deleteColumn(name, Bytes.toBytes(columnFamily));
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.deleteColumn", tableName, start, success);
+		}
+		metaCache.invalidate(name);
+		if(null!=rowCache){
+			rowCache.invalidate(name);
+		}
+		return new SchemaChange(admin, name, "删除列族" + columnFamily, null, columnFamily);
+	}
+
+	/**  DDL DELETE 删除表
+	 *  删除表
+	 * @param tableName	表名
+	 */
+	public static void deleteTable(String tableName) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			admin.disableTable(tableName);
+			admin.deleteTable(tableName);
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.deleteTable", tableName, start, success);
+		}
+		metaCache.invalidate(TableName.valueOf(tableName));
+		if(null!=rowCache){
+			rowCache.invalidate(TableName.valueOf(tableName));
+		}
+		System.out.println("表" + tableName + "删除成功！");
+			
+	}
+	
+	
+	/** DML 增
+	 * 	增添数据，增添数据至指定的“cell”中
+	 * @param tableName	表名
+	 * @param rowKey	行键
+	 * @param columnFamily	列族
+	 * @param column	列名
+	 * @param value	添加的数据
+	 */
+	public static void addRow(String tableName, String rowKey, String columnFamily, String column, String value) throws IOException{
+
+		HBaseDao.checkFamily(tableName, columnFamily);	//判断表、列族是否存在
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			//描述数据的增添（put之前应该检查是否存在表、列族）
+			Put put = new Put(HBaseDao.encodeRow(tableName, rowKey));	
+			put.addColumn(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
+			table.put(put);
+			HBaseDao.invalidateRow(table.getName(), put.getRow());
+			success = true;
+		}finally{
+			Metrics.record("hbase.put", tableName, start, success, 1, 0);
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/** DML 增
+	 * 	批量增添数据，同一行的多个列合并为一个Put，经写缓冲区批量提交
+	 * @param tableName	表名
+	 * @param columnFamily	列族
+	 * @param rows	行键 -> (列名 -> 数据)
+	 */
+	public static void addRows(String tableName, String columnFamily, Map<String, Map<String, String>> rows) throws IOException{
+
+		HBaseDao.checkFamily(tableName, columnFamily);	//判断表、列族是否存在
+		
+		byte[] family = Bytes.toBytes(columnFamily);
+		RowKeyCodec codec = HBaseDao.getRowKeyCodec(tableName);
+		HBaseWriter writer = new HBaseWriter(conn, tableName, codec, 0, 0, null);	//未设置失败回调，写入失败时抛出异常
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			try{
+				for(Map.Entry<String, Map<String, String>> row : rows.entrySet()){
+					Put put = new Put(codec.encode(Bytes.toBytes(row.getKey())));
+					for(Map.Entry<String, String> cell : row.getValue().entrySet()){
+						put.addColumn(family, Bytes.toBytes(cell.getKey()), Bytes.toBytes(cell.getValue()));
+					}
+					writer.mutate(put);
+				}
+			}finally{
+				writer.close();		//关闭时提交剩余数据
+			}
+			success = true;
+		}finally{
+			Metrics.record("hbase.putBatch", tableName, start, success, rows.size(), 0);
+		}
+	}
+	
+	/** DML 增
+	 * 	打开批量写入器，使用默认写缓冲区大小，每秒定时刷写一次，写入失败时抛出异常
+	 * @param tableName	表名
+	 */
+	public static HBaseWriter openWriter(String tableName) throws IOException{
+		return openWriter(tableName, 0, DEFAULT_FLUSH_INTERVAL_MS, null);
+	}
+	
+	/** DML 增
+	 * 	打开批量写入器，使用完毕后需调用close()
+	 * @param tableName	表名
+	 * @param writeBufferSize	写缓冲区大小（字节），小于等于0时使用hbase.client.write.buffer配置
+	 * @param flushIntervalMs	定时刷写间隔（毫秒），小于等于0时不定时刷写
+	 * @param listener	写入失败回调，为null时写入失败抛出异常
+	 */
+	public static HBaseWriter openWriter(String tableName, long writeBufferSize, long flushIntervalMs, HBaseWriter.FailureListener listener) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		return new HBaseWriter(conn, tableName, HBaseDao.getRowKeyCodec(tableName), writeBufferSize, flushIntervalMs, listener);
+	}
+	
+	/** DML 增
+	 * 	打开HFile批量导入器，用于大批量历史数据导入，数据直接生成HFile移入Region，不经过WAL和MemStore
+	 * @param tableName	表名
+	 * @param columnFamily	列族
+	 * @param columns	输入文件中行键之后各字段对应的列名
+	 * @param stagingDir	暂存HFile及进度标记的目录，须与HBase位于同一文件系统；中断后以相同目录重新执行可断点续传
+	 */
+	public static HBaseBulkLoader openBulkLoader(String tableName, String columnFamily, String[] columns, String stagingDir) throws IOException{
+
+		HBaseDao.checkFamily(tableName, columnFamily);	//判断表、列族是否存在
+		
+		return new HBaseBulkLoader(conn, workers, tableName, HBaseDao.getRowKeyCodec(tableName), columnFamily, columns, stagingDir);
+	}
+	
+	/** DML 改
+	 * 	打开计数累加器，增量在客户端按窗口合并后以批量Increment提交，用于替代频繁的appendData累计
+	 * @param tableName	表名
+	 * @param windowMs	合并窗口（毫秒），须大于0
+	 * @param durability	持久化级别，如Durability.ASYNC_WAL，窗口及WAL同步间隔共同决定宕机时的最大丢失量
+	 * @param listener	提交失败回调，失败的行在后续窗口重试，重试耗尽后回调；为null时以IOException抛出（定时提交的失败在下一次add、flush或close时抛出）
+	 */
+	public static CounterAccumulator openAccumulator(String tableName, long windowMs, Durability durability, HBaseWriter.FailureListener listener) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		return new CounterAccumulator(tableName, windowMs, durability, DEFAULT_ACCUMULATOR_MAX_KEYS, listener);
+	}
+	
+	/**  DML 删
+	 *  删除数据，删除某行记录
+	 * @param tableName	表名
+	 * @param rowKey	行键
+	 */
+	public static void deleteRow(String tableName, String rowKey) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			//描述待删除的数据
+			Delete delete =  new Delete(HBaseDao.encodeRow(tableName, rowKey));
+			table.delete(delete);
+			HBaseDao.invalidateRow(table.getName(), delete.getRow());
+			success = true;
+		}finally{
+			Metrics.record("hbase.delete", tableName, start, success, 1, 0);
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/**  DML 删
+	 *  删除数据，删除多行记录
+	 * @param tableName	表名
+	 * @param rowKeys	行键数组
+	 */
+	public static void deleteRows(String tableName, String[] rowKeys) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表操作句柄
+		try{
+			//创建一个数据删除描述List，用于存放待删除的多行记录描述
+			List<Delete> deleteList = new ArrayList<Delete>();
+			for(String rowkey : rowKeys){
+				Delete delete = new Delete(HBaseDao.encodeRow(tableName, rowkey));
+				deleteList.add(delete);
+			}
+			long start = Metrics.start();
+			boolean success = false;
+			try{
+				table.delete(deleteList);	//执行失败时deleteList中只保留未删除的记录
+				success = true;
+			}finally{
+				Metrics.record("hbase.deleteBatch", tableName, start, success, rowKeys.length, 0);
+				for(String rowkey : rowKeys){
+					HBaseDao.invalidateRow(table.getName(), HBaseDao.encodeRow(tableName, rowkey));
+				}
+			}
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+	}	
+	
+	/**  DML 删
+	 *  按行键范围删除[startRow, stopRow)内的所有行，不需要先在客户端列出行键
+	 * @param tableName	表名
+	 * @param startRow	起始行键（包含），为null时从表头开始
+	 * @param stopRow	结束行键（不包含），为null时到表尾
+	 * @return	删除的行数
+	 */
+	public static long deleteRange(String tableName, String startRow, String stopRow) throws IOException{
+		
+		ScanOptions range = new ScanOptions();
+		if(null!=startRow){
+			range.setStartRow(startRow);
+		}
+		if(null!=stopRow){
+			range.setStopRow(stopRow);
+		}
+		return deleteRange(tableName, range, DEFAULT_DELETE_BATCH_SIZE, 0);
+	}
+	
+	/**  DML 删
+	 *  按行键前缀删除，如删除某个表计的全部读数
+	 * @param tableName	表名
+	 * @param rowPrefix	逻辑行键前缀
+	 * @return	删除的行数
+	 */
+	public static long deletePrefix(String tableName, String rowPrefix) throws IOException{
+		return deleteRange(tableName, new ScanOptions().setRowPrefix(rowPrefix), DEFAULT_DELETE_BATCH_SIZE, 0);
+	}
+	
+	/**  DML 删
+	 *  按Region并行删除范围内的所有行，只扫描行键，分批提交Delete，并行度为工作线程数
+	 * @param tableName	表名
+	 * @param range	删除范围，只使用其中的起止行键或前缀
+	 * @param batchSize	每次提交的Delete数
+	 * @param maxRowsPerSecond	每秒最多删除的行数，小于等于0时不限速
+	 * @return	删除的行数
+	 */
+	public static long deleteRange(String tableName, ScanOptions range, int batchSize, long maxRowsPerSecond) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		int parallelism = conf.getInt(WORKER_THREADS_KEY, 2 * Runtime.getRuntime().availableProcessors());
+		long start = Metrics.start();
+		boolean success = false;
+		long rows = 0;
+		try{
+			rows = new RangeDeleter(conn, workers, tableName, range, HBaseDao.getRowKeyCodec(tableName), parallelism, batchSize, maxRowsPerSecond).delete();
+			success = true;
+			return rows;
+		}finally{
+			Metrics.record("hbase.deleteRange", tableName, start, success, rows, 0);
+		}
+	}
+	
+	/**	DML 查
+	 *  查询数据，查询指定行的记录
+	 * @param tableName	表名
+	 * @param rowKey 行键
+	 */
+	public static void getRow(String tableName, String rowKey) throws IOException{
+		
+		//获取行记录，通过rawcell()方法获取cell，再通过CellReader直接读取cell中的属性值
+		Result result = HBaseDao.getResult(tableName, rowKey);		
+		for(Cell cell : result.rawCells()){	 
+			System.out.println(CellReader.toString(cell));
+		}
+	}
+	
+	/**	DML 查
+	 *  查询数据，返回指定行的记录；启用行缓存时优先从缓存读取
+	 * @param tableName	表名
+	 * @param rowKey 行键
+	 * @return	行记录，行不存在时为空Result
+	 */
+	public static Result getResult(String tableName, String rowKey) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		TableName name = TableName.valueOf(tableName);
+		byte[] row = HBaseDao.encodeRow(tableName, rowKey);
+		RowCache cache = rowCache;
+		long stamp = 0;
+		if(null!=cache){
+			Result cached = cache.get(name, row);
+			if(null!=cached){
+				return cached;
+			}
+			stamp = cache.stamp(name, row);
+		}
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		long start = Metrics.start();
+		boolean success = false;
+		Result result = null;
+		try{
+			//描述待查询的数据行
+			result = table.get(new Get(row));
+			if(null!=cache){
+				cache.put(name, row, result, stamp);
+			}
+			success = true;
+			return result;
+		}finally{
+			Metrics.record("hbase.get", tableName, start, success, 1, (null==result) ? 0 : Result.getTotalSizeOfCells(result));
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/**	DML 查
+	 *  批量查询多行记录
+	 *  行键较多时按所在Region分组、每组切分为不超过MULTI_GET_BATCH_SIZE的批次，各批次并行查询
+	 * @param tableName	表名
+	 * @param rowKeys	行键数组
+	 * @param columns	待查询的列，格式为“列族”或“列族:列名”，为null时查询整行
+	 * @return	查到的行及不存在的行键
+	 */
+	public static MultiGetResult getRows(String tableName, String[] rowKeys, String[] columns) throws IOException{
+		
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		//启用行缓存且查询整行时，先从缓存读取，只查询未命中的行
+		TableName name = TableName.valueOf(tableName);
+		RowCache cache = (null==columns) ? rowCache : null;
+		Map<String, Result> found = new HashMap<String, Result>();
+		List<String> pending = Arrays.asList(rowKeys);
+		Map<String, Long> stamps = null;		//未命中的行键 -> 查询前该行的失效计数
+		if(null!=cache){
+			stamps = new HashMap<String, Long>();
+			pending = new ArrayList<String>();
+			for(String rowKey : rowKeys){
+				byte[] row = HBaseDao.encodeRow(tableName, rowKey);
+				Result cached = cache.get(name, row);
+				if(null!=cached){
+					found.put(rowKey, cached);
+				}else{
+					stamps.put(rowKey, cache.stamp(name, row));
+					pending.add(rowKey);
+				}
+			}
+		}
+		
+		Map<String, Result> fetched = HBaseDao.fetchAll(tableName, pending, columns);
+		if(null!=cache){
+			for(Map.Entry<String, Result> row : fetched.entrySet()){
+				Long stamp = stamps.get(row.getKey());
+				if(null!=stamp){
+					cache.put(name, HBaseDao.encodeRow(tableName, row.getKey()), row.getValue(), stamp);
+				}
+			}
+		}
+		found.putAll(fetched);
+		return MultiGetResult.merge(rowKeys, found);
+	}
+	
+	/**
+	 * 批量查询，行键较多时按Region分组分批并行查询
+	 * @param tableName	表名
+	 * @param rowKeys	行键
+	 * @param columns	待查询的列，为null时查询整行
+	 * @return	行键 -> 行记录，不存在的行为空Result
+	 */
+	private static Map<String, Result> fetchAll(final String tableName, List<String> rowKeys, final String[] columns) throws IOException{
+		
+		if(rowKeys.size() <= MULTI_GET_BATCH_SIZE){
+			return HBaseDao.fetchRows(tableName, rowKeys, columns);
+		}
+		
+		//按Region分组，同一批次的Get落在同一个RegionServer上
+		Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+		RegionLocator locator = conn.getRegionLocator(TableName.valueOf(tableName));
+		try{
+			for(String rowKey : rowKeys){
+				HRegionLocation location = locator.getRegionLocation(HBaseDao.encodeRow(tableName, rowKey));
+				String region = location.getRegionInfo().getEncodedName();
+				List<String> group = groups.get(region);
+				if(null==group){
+					group = new ArrayList<String>();
+					groups.put(region, group);
+				}
+				group.add(rowKey);
+			}
+		}finally{
+			locator.close();
+		}
+		
+		//每组切分为批次，提交至工作线程池并行查询
+		List<Future<Map<String, Result>>> futures = new ArrayList<Future<Map<String, Result>>>();
+		for(List<String> group : groups.values()){
+			for(int from = 0; from < group.size(); from += MULTI_GET_BATCH_SIZE){
+				final List<String> batch = group.subList(from, Math.min(group.size(), from + MULTI_GET_BATCH_SIZE));
+				futures.add(workers.submit(new Callable<Map<String, Result>>(){
+					@Override
+					public Map<String, Result> call() throws IOException{
+						return HBaseDao.fetchRows(tableName, batch, columns);
+					}
+				}));
+			}
+		}
+		
+		Map<String, Result> found = new HashMap<String, Result>();
+		try{
+			for(Future<Map<String, Result>> future : futures){
+				found.putAll(future.get());
+			}
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("批量查询被中断").initCause(e);
+		}catch(ExecutionException e){
+			throw HBaseDao.toIOException(e.getCause());
+		}finally{
+			for(Future<Map<String, Result>> future : futures){
+				future.cancel(false);		//只取消未开始的批次；不中断共享线程池中执行中的RPC，以免关闭共享连接的套接字，由其自行完成或超时
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * 以一次table.get(List)查询一批行记录
+	 * @param tableName	表名
+	 * @param rowKeys	行键
+	 * @param columns	待查询的列，为null时查询整行
+	 * @return	行键 -> 行记录，不存在的行为空Result
+	 */
+	private static Map<String, Result> fetchRows(String tableName, List<String> rowKeys, String[] columns) throws IOException{
+		
+		if(rowKeys.isEmpty()){
+			return new HashMap<String, Result>();
+		}
+		List<Get> gets = new ArrayList<Get>(rowKeys.size());
+		for(String rowKey : rowKeys){
+			Get get = new Get(HBaseDao.encodeRow(tableName, rowKey));
+			if(null!=columns){
+				for(String column : columns){
+					int sep = column.indexOf(':');
+					if(sep < 0){
+						get.addFamily(Bytes.toBytes(column));
+					}else{
+						get.addColumn(Bytes.toBytes(column.substring(0, sep)), Bytes.toBytes(column.substring(sep + 1)));
+					}
+				}
+			}
+			gets.add(get);
+		}
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
+		try{
+			Result[] results = table.get(gets);
+			Map<String, Result> rows = new HashMap<String, Result>();
+			for(int i = 0; i < results.length; i++){
+				rows.put(rowKeys.get(i), results[i]);
+				bytes += Result.getTotalSizeOfCells(results[i]);
+			}
+			success = true;
+			return rows;
+		}finally{
+			Metrics.record("hbase.multiGet", tableName, start, success, gets.size(), bytes);
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/** DML 查
+	 *  查询数据，查询整个表的行记录
+	 * @param tableName	表名
+	 */
+	public static void scanTable(String tableName) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		try{
+			Scan scan = new Scan();	//创建一个表扫描对象
+
+			//获取扫描到的所有行记录，逐行记录逐个cell遍历
+			ResultScanner results = table.getScanner(scan);
+			for(Result result : results){				
+				for(Cell cell : result.rawCells()){				
+					System.out.println(CellReader.toString(cell));
+				}
+			}
+			//关闭扫描结果接收对象
+			results.close();
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/** DML 查
+	 *  流式扫描，打开一个按需拉取结果的扫描器，使用完毕后需调用close()
+	 * @param tableName	表名
+	 * @param options	扫描范围、投影列、过滤条件及调优参数
+	 */
+	public static RowScanner openScanner(String tableName, ScanOptions options) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		//行键分桶时每个分桶一个扫描器，由RowScanner按逻辑行键归并
+		RowKeyCodec codec = HBaseDao.getRowKeyCodec(tableName);
+		List<byte[][]> ranges = ParallelScanner.bucketRanges(codec, options);
+		ResultScanner[] scanners = new ResultScanner[ranges.size()];
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表的操作句柄
+		try{
+			for(int i = 0; i < scanners.length; i++){
+				Scan scan = options.toScan();
+				scan.withStartRow(ranges.get(i)[0]);
+				scan.withStopRow(ranges.get(i)[1]);
+				scanners[i] = table.getScanner(scan);
+			}
+			return new RowScanner(table, scanners, codec.getPrefixLength(), options.getLimit());
+		}catch(IOException e){
+			for(ResultScanner scanner : scanners){
+				if(null!=scanner){
+					scanner.close();
+				}
+			}
+			HBaseDao.releaseTable(table);
+			throw e;
+		}
+	}
+	
+	/** DML 查
+	 *  流式扫描，逐行回调handler，handler返回false时停止扫描
+	 * @param tableName	表名
+	 * @param options	扫描范围、投影列、过滤条件及调优参数
+	 * @param handler	结果回调
+	 * @return	回调的行数
+	 */
+	public static long scan(String tableName, ScanOptions options, ResultHandler handler) throws IOException{
+
+		RowScanner scanner = HBaseDao.openScanner(tableName, options);
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
+		try{
+			Result result;
+			while(null!=(result = scanner.nextResult())){
+				bytes += Result.getTotalSizeOfCells(result);
+				if(!handler.onResult(result)){
+					break;
+				}
+			}
+			success = true;
+			return scanner.getCount();
+		}finally{
+			Metrics.record("hbase.scan", tableName, start, success, scanner.getCount(), bytes);
+			scanner.close();
+		}
+	}
+	
+	/** DML 查
+	 *  流式扫描，逐个Cell回调visitor，配合CellReader读取时每个Cell不产生新对象
+	 * @param tableName	表名
+	 * @param options	扫描范围、投影列、过滤条件及调优参数
+	 * @param visitor	Cell回调，返回false时停止扫描
+	 * @return	回调的Cell数
+	 */
+	public static long scanCells(String tableName, ScanOptions options, final CellVisitor visitor) throws IOException{
+
+		final long[] cells = new long[1];
+		HBaseDao.scan(tableName, options, new ResultHandler(){
+			@Override
+			public boolean onResult(Result result) throws IOException{
+				for(Cell cell : result.rawCells()){		//rawCells直接返回内部数组，不复制
+					cells[0]++;
+					if(!visitor.visit(cell)){
+						return false;
+					}
+				}
+				return true;
+			}
+		});
+		return cells[0];
+	}
+	
+	/** DML 查
+	 *  按Region并行扫描，每个Region一个子扫描，并行度默认与工作线程数相同
+	 * @param tableName	表名
+	 * @param options	扫描范围、投影列、过滤条件及调优参数
+	 * @param ordered	是否按行键顺序回调；无序时先扫到先回调，吞吐更高
+	 * @param handler	结果回调，在调用线程中执行
+	 * @return	回调的行数
+	 */
+	public static long parallelScan(String tableName, ScanOptions options, boolean ordered, ResultHandler handler) throws IOException{
+		return parallelScan(tableName, options, conf.getInt(WORKER_THREADS_KEY, 2 * Runtime.getRuntime().availableProcessors()), 1, ordered, handler);
+	}
+	
+	/** DML 查
+	 *  按Region并行扫描，用于全表或大范围扫描
+	 * @param tableName	表名
+	 * @param options	扫描范围、投影列、过滤条件及调优参数
+	 * @param parallelism	同时进行的子扫描数，每次扫描使用自己的parallelism个线程，不占用共享工作线程池
+	 * @param splitsPerRegion	每个Region切分的子范围数，大Region可细分以提高并行度
+	 * @param ordered	是否按行键顺序回调
+	 * @param handler	结果回调，在调用线程中执行
+	 * @return	回调的行数
+	 */
+	public static long parallelScan(String tableName, ScanOptions options, int parallelism, int splitsPerRegion, boolean ordered, final ResultHandler handler) throws IOException{
+
+		HBaseDao.checkTable(tableName);	//判断表是否存在
+		
+		//统计回调的字节数，回调在调用线程中执行，不需要同步
+		final long[] bytes = new long[1];
+		ResultHandler counter = new ResultHandler(){
+			@Override
+			public boolean onResult(Result result) throws IOException{
+				bytes[0] += Result.getTotalSizeOfCells(result);
+				return handler.onResult(result);
+			}
+		};
+		long start = Metrics.start();
+		boolean success = false;
+		long rows = 0;
+		try{
+			rows = new ParallelScanner(conn, tableName, options, HBaseDao.getRowKeyCodec(tableName), parallelism, splitsPerRegion, ordered).scan(counter);
+			success = true;
+			return rows;
+		}finally{
+			Metrics.record("hbase.parallelScan", tableName, start, success, rows, bytes[0]);
+		}
+	}
+	
+	/**  DML 改 
+	 *  追加数据，追加数据至指定cell中
+	 * @param tableName	表名
+	 * @param rowKey	行键
+	 * @param columnFamily	列族
+	 * @param column	列
+	 * @param value 值
+	 */
+	public static void appendData(String tableName, String rowKey, String columnFamily, String column, String value) throws IOException{
+
+		HBaseDao.checkFamily(tableName, columnFamily);	//判断表、列族是否存在
+		
+		Table table = HBaseDao.getTable(tableName);	//获取表操作句柄
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			//描述待追加的数据
+			Append append = new Append(HBaseDao.encodeRow(tableName, rowKey));
+			append.add(Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
+		
+			table.append(append);
+			HBaseDao.invalidateRow(table.getName(), append.getRow());
+			success = true;
+		}finally{
+			Metrics.record("hbase.append", tableName, start, success, 1, 0);
+			HBaseDao.releaseTable(table);
+		}
+	}
+	
+	/**
+	 * 获取HBase数据库连接，供同包的并发组件使用
+	 */
+	static Connection connection(){
+		return conn;
+	}
+	
+	/**
+	 * 从缓存借出表操作句柄，缓存中没有空闲句柄时新建
+	 * 借出的句柄由当前线程独占，使用完毕后须调用releaseTable归还
+	 * @param tableName	表名
+	 */
+	static Table getTable(String tableName) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			TableName name = TableName.valueOf(tableName);
+			Queue<Table> idle = tables.get(name);
+			Table table = (null==idle) ? null : idle.poll();
+			table = (null!=table) ? table : conn.getTable(name);
+			success = true;
+			return table;
+		}finally{
+			Metrics.record("hbase.getTable", tableName, start, success);
+		}
+	}
+	
+	/**
+	 * 归还表操作句柄至缓存
+	 * @param table	由getTable借出的表操作句柄
+	 */
+	static void releaseTable(Table table) throws IOException{
+		
+		if(null==conn){		//连接已关闭，直接关闭句柄
+			table.close();
+			return;
+		}
+		Queue<Table> idle = tables.get(table.getName());
+		if(null==idle){
+			Queue<Table> created = new ConcurrentLinkedQueue<Table>();
+			idle = tables.putIfAbsent(table.getName(), created);
+			if(null==idle){
+				idle = created;
+			}
+		}
+		idle.offer(table);
+	}
+	
+	/**
+	 * 将并发任务中抛出的异常转换为IOException
+	 */
+	static IOException toIOException(Throwable e){
+		if(e instanceof IOException){
+			return (IOException) e;
+		}
+		if(e instanceof RuntimeException){
+			throw (RuntimeException) e;
+		}
+		return new IOException(e);
+	}
+	
+	/**
+	 * 判断表是否存在，优先查表元数据缓存
+	 * @param tableName	表名
+	 * @throws TableNotFoundException	表不存在
+	 */
+	public static void checkTable(String tableName) throws IOException{
+		metaCache.checkTable(TableName.valueOf(tableName));
+	}
+	
+	/**
+	 * 判断表及列族是否存在，优先查表元数据缓存
+	 * @param tableName	表名
+	 * @param columnFamily	列族
+	 * @throws TableNotFoundException	表不存在
+	 * @throws NoSuchColumnFamilyException	列族不存在
+	 */
+	public static void checkFamily(String tableName, String columnFamily) throws IOException{
+		metaCache.checkFamily(TableName.valueOf(tableName), columnFamily);
+	}
+	
+	
+}
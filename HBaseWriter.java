@@ -0,0 +1,250 @@
+package com.cp.hbase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 批量写入器，基于BufferedMutator
+ * 同一行连续写入的多个cell合并为一个Put，缓冲区达到writeBufferSize或距上次刷写超过flushIntervalMs时批量提交，
+ * 提交时由BufferedMutator按RegionServer分组并行发送
+ * 启用行缓存时，写入的行在刷写确认后才使缓存失效，此前读到的可能是旧数据（最长为一个刷写间隔）
+ * 线程安全，可由多个线程共用一个写入器
+ */
+public class HBaseWriter implements Closeable{
+
+	/**
+	 * 写入失败回调，每条最终写入失败（重试耗尽）的Mutation回调一次
+	 */
+	public interface FailureListener{
+		/**
+		 * @param mutation	写入失败的Put/Delete等
+		 * @param cause	失败原因
+		 * @param hostnamePort	出错的RegionServer
+		 */
+		void onFailure(Row mutation, Throwable cause, String hostnamePort);
+	}
+
+	//定时刷写线程，所有写入器共用一个守护线程
+	private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+		@Override
+		public Thread newThread(Runnable r){
+			Thread t = new Thread(r, "hbase-writer-flusher");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private static final int MAX_UNACKNOWLEDGED = 10000;		//未确认刷写的行键达到该数时主动刷写
+
+	private final TableName tableName;
+	private final RowKeyCodec codec;
+	private final BufferedMutator mutator;
+	private final ScheduledFuture<?> flushTask;
+
+	private Put pending = null;		//当前正在合并的行
+	private final List<byte[]> unacknowledged = new ArrayList<byte[]>();		//启用行缓存时，已交给BufferedMutator、尚未确认刷写的行键
+	private volatile IOException asyncError = null;		//定时刷写中出现的异常，未设置回调时在下一次调用中抛出
+	private volatile boolean closed = false;
+
+	/**
+	 * @param conn	HBase数据库连接
+	 * @param tableName	表名
+	 * @param codec	行键编解码器，addRow写入前对行键编码
+	 * @param writeBufferSize	写缓冲区大小（字节），超过即刷写；小于等于0时使用hbase.client.write.buffer配置
+	 * @param flushIntervalMs	定时刷写间隔（毫秒）；小于等于0时不定时刷写
+	 * @param listener	写入失败回调；为null时失败以RetriesExhaustedWithDetailsException抛出
+	 */
+	HBaseWriter(Connection conn, String tableName, RowKeyCodec codec, long writeBufferSize, long flushIntervalMs, final FailureListener listener) throws IOException{
+
+		this.tableName = TableName.valueOf(tableName);
+		this.codec = codec;
+
+		BufferedMutatorParams params = new BufferedMutatorParams(this.tableName);
+		if(writeBufferSize > 0){
+			params.writeBufferSize(writeBufferSize);
+		}
+		if(null!=listener){
+			params.listener(new BufferedMutator.ExceptionListener(){
+				@Override
+				public void onException(RetriesExhaustedWithDetailsException e, BufferedMutator mutator){
+					for(int i = 0; i < e.getNumExceptions(); i++){
+						listener.onFailure(e.getRow(i), e.getCause(i), e.getHostnamePort(i));
+					}
+				}
+			});
+		}
+		this.mutator = conn.getBufferedMutator(params);
+
+		if(flushIntervalMs > 0){
+			this.flushTask = flusher.scheduleWithFixedDelay(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						flush();
+					}catch(IOException e){
+						asyncError = e;
+					}
+				}
+			}, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+		}else{
+			this.flushTask = null;
+		}
+	}
+
+	/**
+	 * 写入一个cell，与上一次写入同一行时合并到同一个Put中
+	 * @param rowKey	行键
+	 * @param columnFamily	列族
+	 * @param column	列名
+	 * @param value	数据
+	 */
+	public void addRow(String rowKey, String columnFamily, String column, String value) throws IOException{
+		addRow(Bytes.toBytes(rowKey), Bytes.toBytes(columnFamily), Bytes.toBytes(column), Bytes.toBytes(value));
+	}
+
+	/**
+	 * 写入一个cell，与上一次写入同一行时合并到同一个Put中
+	 * @param rowKey	逻辑行键，写入前经行键编解码器编码
+	 */
+	public synchronized void addRow(byte[] rowKey, byte[] columnFamily, byte[] column, byte[] value) throws IOException{
+
+		ensureOpen();
+		byte[] row = codec.encode(rowKey);
+		if(null!=pending && !Bytes.equals(pending.getRow(), row)){
+			send(pending);
+			pending = null;
+		}
+		if(null==pending){
+			pending = new Put(row);
+		}
+		pending.addColumn(columnFamily, column, value);
+	}
+
+	/**
+	 * 写入一个完整的Put/Delete等
+	 * @param mutation	待写入的数据描述，行键须为已编码的物理行键（见HBaseDao.encodeRow）
+	 */
+	public synchronized void mutate(Mutation mutation) throws IOException{
+
+		ensureOpen();
+		if(null!=pending){
+			send(pending);
+			pending = null;
+		}
+		send(mutation);
+	}
+
+	/**
+	 * 立即提交缓冲区中的所有数据
+	 */
+	public synchronized void flush() throws IOException{
+
+		if(closed){
+			return;
+		}
+		if(null!=pending){
+			send(pending);
+			pending = null;
+		}
+		try{
+			mutator.flush();
+		}finally{
+			invalidateFlushed();	//失败时部分行可能已写入，同样失效
+		}
+	}
+
+	/**
+	 * 提交剩余数据并释放写入器
+	 */
+	@Override
+	public void close() throws IOException{
+
+		if(null!=flushTask){
+			flushTask.cancel(false);
+		}
+		synchronized(this){
+			if(closed){
+				return;
+			}
+			closed = true;
+			try{
+				if(null!=pending){
+					send(pending);
+					pending = null;
+				}
+			}finally{
+				mutator.close();	//close时会刷写缓冲区
+				invalidateFlushed();
+			}
+		}
+		throwAsyncError();
+	}
+
+	public TableName getName(){
+		return tableName;
+	}
+
+	public long getWriteBufferSize(){
+		return mutator.getWriteBufferSize();
+	}
+
+	/**
+	 * 交给BufferedMutator缓冲；启用行缓存时记下行键，刷写确认后再使其失效
+	 * 在服务端确认前失效，期间的查询会把旧数据重新填入缓存并一直保留到过期
+	 */
+	private void send(Mutation mutation) throws IOException{
+		mutator.mutate(mutation);
+		if(null!=HBaseDao.getRowCache()){
+			unacknowledged.add(mutation.getRow());
+			if(unacknowledged.size() >= MAX_UNACKNOWLEDGED){
+				try{
+					mutator.flush();	//限制记录的行键数，同时缩短缓存可能不一致的时间
+				}finally{
+					invalidateFlushed();
+				}
+			}
+		}
+	}
+
+	/**
+	 * BufferedMutator刷写返回后，使此前写入的行的行缓存失效
+	 */
+	private void invalidateFlushed(){
+		for(byte[] row : unacknowledged){
+			HBaseDao.invalidateRow(tableName, row);
+		}
+		unacknowledged.clear();
+	}
+
+	private void ensureOpen() throws IOException{
+		if(closed){
+			throw new IOException("表" + tableName + "的写入器已关闭");
+		}
+		throwAsyncError();
+	}
+
+	private void throwAsyncError() throws IOException{
+		IOException e = asyncError;
+		if(null!=e){
+			asyncError = null;
+			throw e;
+		}
+	}
+}
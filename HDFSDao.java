@@ -1,22 +1,41 @@
 package com.cp.hdfs;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FsStatus;
-import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.IOUtils;
+
+import com.cp.metrics.Metrics;
 
 public class HDFSDao {
 	
 	//配置信息封装对象,用于配置HDFS相关信息，提供HDFS文件系统的客户端的实例化
 	private static Configuration conf = new Configuration();		//构造函数中会对classpath下的xxx.site.xml文件进行解析，在真实项目环境下，应该把xxx.site.xml加入到工程中
 	private static FileSystem fs = null;		//HDFS文件系统的客户端对象，通过它来操作HDFS文件系统
+	private static boolean ownedFs = false;		//fs是否由newInstance新建，不在FileSystem缓存中，替换时须自行关闭
+	
+	private static final int COPY_BUFFER_SIZE = 128 * 1024;		//流式复制的缓冲区大小
+	private static final int WALK_PARALLELISM = 8;		//递归列目录的并行线程数
 	
 	/**
 	 * 获取HDFS文件系统客户端 
@@ -26,7 +45,32 @@ public class HDFSDao {
 		//设置HDFS文件系统相关配置参数
 		conf.set("fs.defaultFS", "hdfs://master:9000/");
 		conf.set("df.rep","2");
-		fs = FileSystem.get(conf);		//根据配置文件的配置信息，实例化获取到对应配置文件类型的文件系统客户端
+		replaceFs(FileSystem.get(conf), false);		//根据配置文件的配置信息，实例化获取到对应配置文件类型的文件系统客户端
+	}
+	
+	/**
+	 * 使用指定配置获取文件系统客户端，如连接进程内的测试集群
+	 * @param configuration	HDFS配置
+	 */
+	public static void init(Configuration configuration) throws IOException{
+		
+		conf = configuration;
+		replaceFs(FileSystem.get(conf), false);
+	}
+	
+	/**
+	 * 替换文件系统客户端，原客户端由newInstance新建时将其关闭
+	 * FileSystem.get返回的缓存实例可能被其他DAO共用，不能关闭
+	 */
+	private static void replaceFs(FileSystem newFs, boolean owned) throws IOException{
+		
+		FileSystem old = fs;
+		boolean oldOwned = ownedFs;
+		fs = newFs;
+		ownedFs = owned;
+		if(oldOwned && null!=old && old!=newFs){
+			old.close();
+		}
 	}
 	
 	/**
@@ -38,7 +82,14 @@ public class HDFSDao {
 		
 		File f = new File(localFilePath);
 		if(f.exists()){
-			fs.copyFromLocalFile(new Path(localFilePath), new Path(destFilePath));
+			long start = Metrics.start();
+			boolean success = false;
+			try{
+				fs.copyFromLocalFile(new Path(localFilePath), new Path(destFilePath));
+				success = true;
+			}finally{
+				Metrics.record("hdfs.upload", Metrics.pathLabel(destFilePath), start, success, 0, f.length());
+			}
 		}else{
 			System.out.println("待上传的文件不存在！");
 			System.exit(0);
@@ -46,6 +97,99 @@ public class HDFSDao {
 		
 	}
 
+	/**
+	 *  增  并行上传本地目录至HDFS，保持目录结构
+	 *  单个文件失败不影响其他文件，失败原因记录在返回结果中
+	 * @param localDir	待上传的本地目录
+	 * @param destDir	HDFS目标目录
+	 * @param workers	并发上传的线程数
+	 * @param glob	文件过滤条件，匹配相对于localDir的路径，如"*.csv"只匹配顶层文件，"**.csv"匹配各层文件，为null时上传所有文件
+	 * @param policy	目标文件已存在时的处理方式
+	 * @return	上传结果，包括吞吐量及各文件的错误
+	 */
+	public static TransferReport uploadDirectory(String localDir, final String destDir, int workers, String glob, final OverwritePolicy policy) throws IOException{
+		
+		final File root = new File(localDir);
+		if(!root.isDirectory()){
+			throw new FileNotFoundException("待上传的目录不存在：" + localDir);
+		}
+		PathMatcher matcher = (null==glob) ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		List<File> files = new ArrayList<File>();
+		collectFiles(root, root, matcher, files);
+		
+		final TransferReport report = new TransferReport();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+		try{
+			for(final File file : files){
+				pool.execute(new Runnable(){
+					@Override
+					public void run(){
+						String relative = root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+						try{
+							uploadOne(file, new Path(destDir, relative), policy, report);
+						}catch(Throwable e){
+							report.failure(file.getPath(), e);
+						}
+					}
+				});
+			}
+			pool.shutdown();
+			while(!pool.awaitTermination(1, TimeUnit.SECONDS)){
+			}
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("目录上传被中断").initCause(e);
+		}finally{
+			pool.shutdownNow();
+			report.finish();
+		}
+		return report;
+	}
+	
+	/**
+	 * 递归收集目录下匹配的文件
+	 */
+	private static void collectFiles(File root, File dir, PathMatcher matcher, List<File> files) throws IOException{
+		
+		File[] children = dir.listFiles();
+		if(null==children){
+			throw new IOException("无法读取目录：" + dir);
+		}
+		for(File child : children){
+			if(child.isDirectory()){
+				collectFiles(root, child, matcher, files);
+			}else if(child.isFile() && (null==matcher || matcher.matches(root.toPath().relativize(child.toPath())))){
+				files.add(child);
+			}
+		}
+	}
+	
+	/**
+	 * 上传一个文件，目标文件已存在时按policy处理；父目录不存在时自动创建
+	 */
+	private static void uploadOne(File file, Path dest, OverwritePolicy policy, TransferReport report) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
+		InputStream in = new FileInputStream(file);
+		try{
+			FSDataOutputStream out = fs.create(dest, policy==OverwritePolicy.OVERWRITE);	//不覆盖时目标已存在抛出FileAlreadyExistsException
+			IOUtils.copyBytes(in, out, COPY_BUFFER_SIZE, true);		//复制完成或失败时关闭两个流
+			bytes = file.length();
+			report.success(bytes);
+			success = true;
+		}catch(FileAlreadyExistsException e){
+			if(policy!=OverwritePolicy.SKIP){
+				throw e;
+			}
+			report.skip();
+			success = true;
+		}finally{
+			IOUtils.closeStream(in);
+			Metrics.record("hdfs.upload", Metrics.pathLabel(dest.toString()), start, success, 0, bytes);
+		}
+	}
+
 	/**
 	 *  增copyToLocal  下载文件至本地
 	 * @param destFilePath	待下载的文件路径
@@ -54,15 +198,82 @@ public class HDFSDao {
 	public static void downloadFile(String destFilePath, String localFilePath) throws IllegalArgumentException, IOException{
 		
 		checkFile(destFilePath);
-		fs.copyToLocalFile(new Path(destFilePath), new Path(localFilePath));
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			fs.copyToLocalFile(new Path(destFilePath), new Path(localFilePath));
+			success = true;
+		}finally{
+			Metrics.record("hdfs.download", Metrics.pathLabel(destFilePath), start, success, 0, success ? new File(localFilePath).length() : 0);
+		}
 	}
 
+	/**
+	 *  按块并行下载大文件至本地，各线程以定位读取下载不同的块范围
+	 * @param destFilePath	待下载的文件路径
+	 * @param localFilePath	下载至本地的文件路径
+	 * @param parallelism	同时下载的范围数
+	 * @return	下载的字节数
+	 */
+	public static long downloadFileParallel(String destFilePath, String localFilePath, int parallelism) throws IOException{
+		return downloadFileParallel(destFilePath, localFilePath, parallelism, new CopyOptions());
+	}
+	
+	/**
+	 *  按块并行下载大文件至本地
+	 * @param destFilePath	待下载的文件路径
+	 * @param localFilePath	下载至本地的文件路径
+	 * @param parallelism	同时下载的范围数，内存占用为parallelism * 缓冲区大小
+	 * @param options	复制参数，使用其中的缓冲区、覆盖及进度回调设置
+	 * @return	下载的字节数
+	 */
+	public static long downloadFileParallel(String destFilePath, String localFilePath, int parallelism, CopyOptions options) throws IOException{
+		return RangedDownloader.download(fs, destFilePath, localFilePath, parallelism, options);
+	}
+	
+	/**
+	 *  增  压缩上传文件 至 HDFS，边读边压缩，不落地临时文件
+	 * @param localFilePath	待上传的文件路径
+	 * @param destFilePath	上传至HDFS的文件路径，压缩格式为CopyOptions.CODEC_BY_EXTENSION时按其扩展名选择
+	 * @param options	复制参数，使用其中的压缩格式、SequenceFile模式等设置
+	 * @return	传输结果，包括原始及存储字节数、压缩比和吞吐量
+	 */
+	public static TransferReport uploadCompressed(String localFilePath, String destFilePath, CopyOptions options) throws IOException{
+		return CodecCopier.upload(fs, localFilePath, destFilePath, options);
+	}
+	
+	/**
+	 *  查  下载HDFS文件 至 本地并解压
+	 * @param destFilePath	待下载的HDFS文件路径，压缩格式为CopyOptions.CODEC_BY_EXTENSION时按其扩展名选择
+	 * @param localFilePath	本地文件保存路径
+	 * @param options	复制参数，需与上传时的压缩格式、SequenceFile模式一致
+	 * @return	传输结果，包括解压后及存储字节数、压缩比和吞吐量
+	 */
+	public static TransferReport downloadCompressed(String destFilePath, String localFilePath, CopyOptions options) throws IOException{
+		return CodecCopier.download(fs, destFilePath, localFilePath, options);
+	}
+	
+	/**
+	 *  增  打开滚动写入器，持续写入指定目录，文件按大小或时间滚动，用完后需关闭以提交最后一个文件
+	 * @param dirPath	写入目录，不存在时创建
+	 * @param options	滚动条件、hflush/hsync间隔、内存缓冲区大小等参数
+	 */
+	public static RollingHDFSWriter openRollingWriter(String dirPath, RollingOptions options) throws IOException{
+		return new RollingHDFSWriter(fs, new Path(dirPath), options);
+	}
+	
 	/**
 	 *  增mkdirs  创建一个文件目录，若父目录不存在，则递归创建
 	 * @param dirPath	待创建文件目录路径
 	 */
 	public static void makeDir(String dirPath) throws IllegalArgumentException, IOException{
-		boolean res = fs.mkdirs(new Path(dirPath));
+		long start = Metrics.start();
+		boolean res = false;
+		try{
+			res = fs.mkdirs(new Path(dirPath));
+		}finally{
+			Metrics.record("hdfs.mkdirs", Metrics.pathLabel(dirPath), start, res);
+		}
 		System.out.println(res?"创建成功！":"创建失败！");
 		
 	}
@@ -74,7 +285,13 @@ public class HDFSDao {
 	public static void deleteFile(String destFilePath) throws IllegalArgumentException, IOException{
 		
 		checkFile(destFilePath);
-		boolean res = fs.delete(new Path(destFilePath), true);
+		long start = Metrics.start();
+		boolean res = false;
+		try{
+			res = fs.delete(new Path(destFilePath), true);
+		}finally{
+			Metrics.record("hdfs.delete", Metrics.pathLabel(destFilePath), start, res);
+		}
 		System.out.println(res?"删除成功！":"删除失败！");
 	}
 	
@@ -87,27 +304,31 @@ public class HDFSDao {
 	public static void rename(String oldFileNamePath, String newFileNamePath) throws IllegalArgumentException, IOException{
 		
 		checkFile(oldFileNamePath);
-		boolean res = fs.rename(new Path(oldFileNamePath), new Path(newFileNamePath));
+		long start = Metrics.start();
+		boolean res = false;
+		try{
+			res = fs.rename(new Path(oldFileNamePath), new Path(newFileNamePath));
+		}finally{
+			Metrics.record("hdfs.rename", Metrics.pathLabel(oldFileNamePath), start, res);
+		}
 		System.out.println(res?"重命名成功！":"重命名失败！");
 	}
 
 	/**
 	 *  查listFiles 查看指定目录下的文件，若目录下还有目录则递归查看
 	 * @param dirPath	待查看的目录路径
-	 * ps 只查看文件
+	 * ps 只查看文件，输出相对路径，各目录内按名称排序；子目录由多个线程预先列出，边遍历边输出
 	 */
 	public static void listFiles(String dirPath) throws FileNotFoundException, IllegalArgumentException, IOException{
 		
-		checkFile(dirPath);
-		//listFiles方法返回的就是一个存放“LocatedFileStatus”的迭代器
-		RemoteIterator<LocatedFileStatus> listFiles = fs.listFiles(new Path(dirPath), true);
-		
-		//直接通过迭代器遍历目录下的文件
-		while(listFiles.hasNext()){
-			
-			LocatedFileStatus file = listFiles.next();
-			System.out.println(file.getPath().getName());
-		}
+		final Path root = fs.getFileStatus(new Path(dirPath)).getPath();
+		newWalker(WALK_PARALLELISM).setSorted(true).walk(dirPath, new FileStatusHandler(){
+			@Override
+			public boolean onStatus(FileStatus file){
+				System.out.println(TreeWalker.relativePath(root, file.getPath()));
+				return true;
+			}
+		});
 	}
 	
 	/**
@@ -118,7 +339,15 @@ public class HDFSDao {
 		
 		checkFile(dirPath);
 		//listStatus方法返回的就是一个FileStatus数组
-		FileStatus[] status = fs.listStatus(new Path(dirPath));
+		FileStatus[] status = null;
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			status = fs.listStatus(new Path(dirPath));
+			success = true;
+		}finally{
+			Metrics.record("hdfs.listStatus", Metrics.pathLabel(dirPath), start, success, (null==status) ? 0 : status.length, 0);
+		}
 		
 		//通过FileStatus数组遍历目录下的文件和目录信息
 		for(FileStatus file : status){
@@ -129,35 +358,131 @@ public class HDFSDao {
 	
 	
 	private static void checkFile(String filePath) throws IllegalArgumentException, IOException{
-		if( !fs.exists(new Path(filePath)) ){
+		long start = Metrics.start();
+		boolean exists = false;
+		boolean success = false;
+		try{
+			exists = fs.exists(new Path(filePath));
+			success = true;
+		}finally{
+			Metrics.record("hdfs.exists", Metrics.pathLabel(filePath), start, success);
+		}
+		if( !exists ){
 			System.out.println("文件或目录不存在！");
 			System.exit(0);
 		}
 	}
 	
 	
+	/**
+	 *  递归查看指定目录下的文件和目录，输出相对路径，目录以"/"结尾
+	 * @param path	待查看的目录路径
+	 * ps 各目录内按名称排序，目录紧接在其内容之前；子目录由多个线程预先列出，边遍历边输出
+	 */
 	public static void list(String path) throws IllegalArgumentException, IOException{
 		
-		checkFile(path);
-		FileStatus[] files = fs.listStatus(new Path(path));
-		for(FileStatus file : files){
-			
-			if(file.isDirectory()){
-				
-				System.out.println( "-"+file.getPath().getName());
-				list(file.getPath().toString());
-				
-			}else if(file.isFile()){
-				System.out.println(file.getPath().getName());
-				
-			}else{
-				
+		final Path root = fs.getFileStatus(new Path(path)).getPath();
+		newWalker(WALK_PARALLELISM).setSorted(true).setIncludeDirectories(true).walk(path, new FileStatusHandler(){
+			@Override
+			public boolean onStatus(FileStatus file){
+				System.out.println(TreeWalker.relativePath(root, file.getPath()) + (file.isDirectory() ? "/" : ""));
+				return true;
 			}
+		});
+	}
+	
+	/**
+	 * 创建并行遍历器，可设置路径通配符及修改时间过滤后调用walk流式处理大目录树
+	 * @param parallelism	同时列目录的线程数
+	 */
+	public static TreeWalker newWalker(int parallelism){
+		return new TreeWalker(fs, parallelism);
+	}
+	
+	/**
+	 *  合并目录下的小文件为一个SequenceFile归档，并生成索引文件（归档文件名 + ".idx"）
+	 * @param dirPath	待合并的目录，递归合并子目录中的文件
+	 * @param archivePath	归档文件路径，已存在时抛出FileAlreadyExistsException
+	 * @param maxFileSize	参与合并的文件大小上限（字节），超过的文件跳过
+	 * @param deleteOriginals	归档校验通过后是否删除原文件
+	 * @return	合并结果
+	 */
+	public static TransferReport compactDirectory(String dirPath, String archivePath, long maxFileSize, boolean deleteOriginals) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		TransferReport report = null;
+		try{
+			report = new SmallFileCompactor(fs, new Path(dirPath), new Path(archivePath), maxFileSize, deleteOriginals).compact();
+			success = true;
+			return report;
+		}finally{
+			Metrics.record("hdfs.compact", Metrics.pathLabel(dirPath), start, success, (null==report) ? 0 : report.getFiles(), (null==report) ? 0 : report.getBytes());
 		}
+	}
+	
+	/**
+	 *  打开compactDirectory生成的归档，按原文件相对路径随机读取，用完后需关闭
+	 * @param archivePath	归档文件路径
+	 */
+	public static SmallFileArchive openArchive(String archivePath) throws IOException{
+		return new SmallFileArchive(fs, new Path(archivePath));
+	}
+	
+	/**
+	 *  查getFileBlockLocations  查看文件各块的偏移、长度及副本所在的DataNode和机架
+	 * @param filePath	文件路径
+	 */
+	public static List<FileRange> getFileBlockLocations(String filePath) throws IOException{
+		return LocalityPlan.blockRanges(fs, new Path(filePath));
+	}
+	
+	/**
+	 *  按数据本地性把一组文件的读取分配给各工作节点，优先本地副本，其次同机架副本
+	 * @param filePaths	待读取的文件
+	 * @param workers	工作节点的主机名
+	 * @return	各工作节点应读取的文件块
+	 */
+	public static LocalityPlan planReads(String[] filePaths, String[] workers) throws IOException{
 		
+		List<Path> files = new ArrayList<Path>(filePaths.length);
+		for(String filePath : filePaths){
+			files.add(new Path(filePath));
+		}
+		return LocalityPlan.create(fs, files, Arrays.asList(workers));
+	}
+	
+	/**
+	 *  打开文件并定位到FileRange的起始偏移，由调用方读取getLength()字节后关闭
+	 * @param range	LocalityPlan分配的文件块
+	 */
+	public static FSDataInputStream openRange(FileRange range) throws IOException{
 		
+		FSDataInputStream in = fs.open(range.getPath());
+		try{
+			in.seek(range.getOffset());
+			return in;
+		}catch(IOException e){
+			in.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 *  启用短路本地读取：副本在本机DataNode上时，客户端经UNIX域套接字取得文件描述符直接读取块文件，不经过DataNode的TCP传输
+	 *  DataNode须配置相同的dfs.domain.socket.path并开启dfs.client.read.shortcircuit，否则自动回退为普通读取
+	 *  会替换文件系统客户端，应在init之后、开始读写之前调用；多次调用时关闭上一次新建的客户端
+	 * @param domainSocketPath	DataNode的UNIX域套接字路径，如/var/lib/hadoop-hdfs/dn_socket
+	 */
+	public static void enableShortCircuitRead(String domainSocketPath) throws IOException{
 		
+		Configuration shortCircuit = new Configuration(conf);
+		shortCircuit.setBoolean("dfs.client.read.shortcircuit", true);
+		shortCircuit.set("dfs.domain.socket.path", domainSocketPath);
+		conf = shortCircuit;
+		replaceFs(FileSystem.newInstance(conf), true);		//FileSystem.get按URI缓存实例，修改后的配置须新建实例才生效
 	}
-	//exists  concat deleteOnExit append getContentSummary geFileBlockLoations getDefault** getFileStatus listFiles list***
+	
+	//exists  concat deleteOnExit append getContentSummary getDefault** getFileStatus listFiles list***
 	
 }
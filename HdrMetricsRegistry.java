@@ -0,0 +1,169 @@
+package com.cp.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 默认指标注册表
+ * 每个{操作, 标签}分别统计成功和失败，各自一个OperationStats，首次出现时注册为MXBean：
+ * 	<domain>:type=Operation,name=<操作>,label=<标签>,outcome=success|failure
+ * 失败的统计在首次失败时才创建；同一操作的标签数超过MAX_LABELS后，新标签合并计入"_other"，
+ * 标签应为表名、配置的路径前缀等有限取值（见Metrics.pathLabel），不应为每个文件或目录一个
+ */
+public class HdrMetricsRegistry implements MetricsRegistry{
+
+	public static final int MAX_LABELS = 32;
+	public static final String OTHER_LABEL = "_other";
+
+	private final String domain;
+	private final ConcurrentMap<String, ConcurrentMap<String, LabelStats>> operations = new ConcurrentHashMap<String, ConcurrentMap<String, LabelStats>>();
+
+	/**
+	 * 一个{操作, 标签}的成功及失败统计
+	 */
+	private final class LabelStats{
+
+		final OperationStats success;
+		private volatile OperationStats failure = null;
+
+		LabelStats(String operation, String label){
+			success = new OperationStats(operation, label, true);
+		}
+
+		OperationStats get(boolean succeeded){
+
+			if(succeeded){
+				return success;
+			}
+			OperationStats stats = failure;
+			if(null==stats){
+				synchronized(this){
+					stats = failure;
+					if(null==stats){
+						stats = new OperationStats(success.getOperation(), success.getLabel(), false);
+						register(stats);
+						failure = stats;
+					}
+				}
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * @param domain	JMX域名，为null时不注册MXBean
+	 */
+	public HdrMetricsRegistry(String domain){
+		this.domain = domain;
+	}
+
+	@Override
+	public void record(String operation, String label, boolean success, long nanos, long rows, long bytes){
+		stats(operation, null==label ? "" : label).get(success).record(nanos, rows, bytes);
+	}
+
+	/**
+	 * 取得{操作, 标签}的统计，不存在时创建并注册成功的统计
+	 */
+	private LabelStats stats(String operation, String label){
+
+		ConcurrentMap<String, LabelStats> labels = operations.get(operation);
+		if(null==labels){
+			ConcurrentMap<String, LabelStats> created = new ConcurrentHashMap<String, LabelStats>();
+			labels = operations.putIfAbsent(operation, created);
+			if(null==labels){
+				labels = created;
+			}
+		}
+		LabelStats stats = labels.get(label);
+		if(null!=stats){
+			return stats;
+		}
+		if(labels.size() >= MAX_LABELS){
+			label = OTHER_LABEL;
+			stats = labels.get(label);
+			if(null!=stats){
+				return stats;
+			}
+		}
+		LabelStats created = new LabelStats(operation, label);
+		stats = labels.putIfAbsent(label, created);
+		if(null==stats){
+			stats = created;
+			register(created.success);
+		}
+		return stats;
+	}
+
+	private void register(OperationStats stats){
+
+		if(null==domain){
+			return;
+		}
+		try{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(stats, objectName(stats));
+		}catch(JMException e){
+			System.out.println("指标" + stats.getOperation() + "注册JMX失败：" + e);
+		}
+	}
+
+	private ObjectName objectName(OperationStats stats) throws JMException{
+		return new ObjectName(domain + ":type=Operation,name=" + ObjectName.quote(stats.getOperation()) +
+				",label=" + ObjectName.quote(stats.getLabel()) + ",outcome=" + stats.getOutcome());
+	}
+
+	/**
+	 * 所有已记录的统计
+	 */
+	public List<OperationStats> getStats(){
+
+		List<OperationStats> all = new ArrayList<OperationStats>();
+		for(ConcurrentMap<String, LabelStats> labels : operations.values()){
+			for(LabelStats stats : labels.values()){
+				all.add(stats.success);
+				if(null!=stats.failure){
+					all.add(stats.failure);
+				}
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * 注销所有MXBean并清空统计
+	 */
+	public void clear(){
+
+		if(null!=domain){
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for(OperationStats stats : getStats()){
+				try{
+					server.unregisterMBean(objectName(stats));
+				}catch(JMException e){
+					//未注册或已注销
+				}
+			}
+		}
+		operations.clear();
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder();
+		for(OperationStats stats : getStats()){
+			if(stats.getCount() > 0){
+				sb.append(stats).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,194 @@
+package com.cp.hdfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * 按数据本地性分配读取任务
+ * 每个文件按块切分为FileRange，依次（从大到小）分配给工作节点：
+ * 优先分配给持有副本的工作节点，其次分配给与副本同机架的工作节点，都没有时分配给已分配字节数最少的工作节点；
+ * 同一级别中选择已分配字节数最少的，使各工作节点的读取量大致均衡；
+ * 每个工作节点最多分配ceil(块数/工作节点数)个块，已满的工作节点不再参与分配，避免副本集中的主机承担过多块
+ * 工作节点的机架由块位置信息中的拓扑路径得出，不是DataNode的工作节点视为未知机架
+ */
+public class LocalityPlan {
+	
+	private final Map<String, List<FileRange>> assignments = new LinkedHashMap<String, List<FileRange>>();
+	private final Map<String, Long> assignedBytes = new HashMap<String, Long>();
+	private final int maxRanges;		//每个工作节点最多分配的块数
+	private long localBytes = 0;
+	private long rackBytes = 0;
+	private long remoteBytes = 0;
+	
+	private LocalityPlan(List<String> workers, int rangeCount){
+		for(String worker : workers){
+			assignments.put(worker, new ArrayList<FileRange>());
+			assignedBytes.put(worker, 0L);
+		}
+		maxRanges = Math.max(1, (rangeCount + assignments.size() - 1) / assignments.size());		//按去重后的工作节点数计算，保证总能分配
+	}
+	
+	/**
+	 * 制定读取计划
+	 * @param fs	HDFS文件系统客户端
+	 * @param files	待读取的文件
+	 * @param workers	工作节点的主机名，与DataNode的主机名一致时可本地读取
+	 */
+	public static LocalityPlan create(FileSystem fs, List<Path> files, List<String> workers) throws IOException{
+		
+		if(workers.isEmpty()){
+			throw new IllegalArgumentException("至少需要一个工作节点");
+		}
+		List<FileRange> ranges = new ArrayList<FileRange>();
+		for(Path file : files){
+			ranges.addAll(blockRanges(fs, file));
+		}
+		
+		//由拓扑路径得出各主机所在机架
+		Map<String, String> hostRacks = new HashMap<String, String>();
+		for(FileRange range : ranges){
+			for(int i = 0; i < range.getHosts().length; i++){
+				hostRacks.put(range.getHosts()[i], range.getRacks()[i]);
+			}
+		}
+		
+		Collections.sort(ranges, new Comparator<FileRange>(){
+			@Override
+			public int compare(FileRange a, FileRange b){
+				return Long.compare(b.getLength(), a.getLength());
+			}
+		});
+		LocalityPlan plan = new LocalityPlan(workers, ranges.size());
+		for(FileRange range : ranges){
+			plan.assign(range, hostRacks);
+		}
+		return plan;
+	}
+	
+	/**
+	 * 文件的各块及其副本位置
+	 * @param fs	HDFS文件系统客户端
+	 * @param file	文件路径
+	 */
+	public static List<FileRange> blockRanges(FileSystem fs, Path file) throws IOException{
+		
+		FileStatus status = fs.getFileStatus(file);
+		BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, status.getLen());
+		List<FileRange> ranges = new ArrayList<FileRange>(blocks.length);
+		for(BlockLocation block : blocks){
+			String[] hosts = block.getHosts();
+			String[] topology = block.getTopologyPaths();		//形如/rack1/host:port
+			String[] racks = new String[hosts.length];
+			for(int i = 0; i < hosts.length; i++){
+				String path = (i < topology.length) ? topology[i] : "";
+				int sep = path.lastIndexOf('/');
+				racks[i] = (sep > 0) ? path.substring(0, sep) : "/default-rack";
+			}
+			ranges.add(new FileRange(file, block.getOffset(), block.getLength(), hosts, racks));
+		}
+		return ranges;
+	}
+	
+	private void assign(FileRange range, Map<String, String> hostRacks){
+		
+		String best = leastLoaded(range.getHosts());
+		if(null!=best){
+			localBytes += range.getLength();
+		}else{
+			List<String> sameRack = new ArrayList<String>();
+			for(String worker : assignments.keySet()){
+				String rack = hostRacks.get(worker);
+				for(String replicaRack : range.getRacks()){
+					if(null!=rack && rack.equals(replicaRack)){
+						sameRack.add(worker);
+						break;
+					}
+				}
+			}
+			best = leastLoaded(sameRack.toArray(new String[sameRack.size()]));
+			if(null!=best){
+				rackBytes += range.getLength();
+			}else{
+				best = leastLoaded(assignments.keySet().toArray(new String[assignments.size()]));
+				remoteBytes += range.getLength();
+			}
+		}
+		assignments.get(best).add(range);
+		assignedBytes.put(best, assignedBytes.get(best) + range.getLength());
+	}
+	
+	/**
+	 * 候选主机中未满且已分配字节数最少的工作节点，没有候选工作节点时返回null
+	 */
+	private String leastLoaded(String[] candidates){
+		
+		String best = null;
+		for(String host : candidates){
+			Long bytes = assignedBytes.get(host);
+			if(null==bytes || assignments.get(host).size() >= maxRanges){
+				continue;
+			}
+			if(null==best || bytes < assignedBytes.get(best)){
+				best = host;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * 工作节点 -> 分配给它的FileRange
+	 */
+	public Map<String, List<FileRange>> getAssignments(){
+		return Collections.unmodifiableMap(assignments);
+	}
+	
+	/**
+	 * 分配给指定工作节点的FileRange，按文件、偏移排序便于顺序读取
+	 */
+	public List<FileRange> getAssignment(String worker){
+		
+		List<FileRange> ranges = new ArrayList<FileRange>(assignments.containsKey(worker) ? assignments.get(worker) : Collections.<FileRange>emptyList());
+		Collections.sort(ranges, new Comparator<FileRange>(){
+			@Override
+			public int compare(FileRange a, FileRange b){
+				int c = a.getPath().compareTo(b.getPath());
+				return (0!=c) ? c : Long.compare(a.getOffset(), b.getOffset());
+			}
+		});
+		return ranges;
+	}
+	
+	public long getLocalBytes(){
+		return localBytes;
+	}
+	
+	public long getRackBytes(){
+		return rackBytes;
+	}
+	
+	public long getRemoteBytes(){
+		return remoteBytes;
+	}
+	
+	@Override
+	public String toString(){
+		long total = localBytes + rackBytes + remoteBytes;
+		return String.format("%d个工作节点，本地读取%.1f%%，同机架%.1f%%，跨机架%.1f%%", assignments.size(),
+				percent(localBytes, total), percent(rackBytes, total), percent(remoteBytes, total));
+	}
+	
+	private static double percent(long part, long total){
+		return (0==total) ? 0 : part * 100.0 / total;
+	}
+}
@@ -0,0 +1,114 @@
+package com.cp.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 指标记录入口
+ * 用法：操作前调用start()取得起始时间，操作结束后（finally中）调用record()
+ * 默认使用HdrMetricsRegistry并注册到JMX；setRegistry(null)关闭记录，此时start()不读取时钟
+ */
+public final class Metrics{
+
+	public static final String JMX_DOMAIN = "com.cp.metrics";
+
+	private static volatile MetricsRegistry registry = new HdrMetricsRegistry(JMX_DOMAIN);
+	private static volatile String[] pathPrefixes = new String[0];
+
+	private Metrics(){
+	}
+
+	/**
+	 * 替换指标注册表
+	 * @param registry	新的注册表，为null时关闭记录
+	 */
+	public static void setRegistry(MetricsRegistry registry){
+		Metrics.registry = registry;
+	}
+
+	public static MetricsRegistry getRegistry(){
+		return registry;
+	}
+
+	/**
+	 * 设置路径标签使用的前缀，如各业务的根目录；HDFS操作按路径所在的最长前缀分别统计
+	 * @param prefixes	路径前缀，为空时HDFS操作只按操作名统计
+	 */
+	public static void setPathPrefixes(String... prefixes){
+
+		List<String> normalized = new ArrayList<String>();
+		for(String prefix : prefixes){
+			String path = stripScheme(prefix);
+			while(path.length() > 1 && path.endsWith("/")){
+				path = path.substring(0, path.length() - 1);
+			}
+			normalized.add(path);
+		}
+		pathPrefixes = normalized.toArray(new String[normalized.size()]);
+	}
+
+	/**
+	 * 路径标签：路径所在的最长的已配置前缀，都不匹配时为空字符串（只按操作名统计）
+	 * 不按每个文件或目录分别统计，遍历大目录树时标签数及内存不会随目录数增长
+	 * @param path	文件路径，可带hdfs://等前缀
+	 */
+	public static String pathLabel(String path){
+
+		path = stripScheme(path);
+		String label = "";
+		for(String prefix : pathPrefixes){
+			boolean under = path.equals(prefix) || path.startsWith("/".equals(prefix) ? prefix : prefix + "/");
+			if(under && prefix.length() > label.length()){
+				label = prefix;
+			}
+		}
+		return label;
+	}
+
+	/**
+	 * 去掉路径中的scheme及authority，如hdfs://master:9000
+	 */
+	private static String stripScheme(String path){
+
+		int scheme = path.indexOf("://");
+		if(scheme < 0){
+			return path;
+		}
+		int root = path.indexOf('/', scheme + 3);
+		return (root < 0) ? "/" : path.substring(root);
+	}
+
+	/**
+	 * 操作起始时间，关闭记录时返回0
+	 */
+	public static long start(){
+		return (null==registry) ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * 记录一次操作的耗时
+	 * @param operation	操作名
+	 * @param label	表名或pathLabel得出的路径标签
+	 * @param start	start()的返回值
+	 * @param success	是否成功
+	 */
+	public static void record(String operation, String label, long start, boolean success){
+		record(operation, label, start, success, 0, 0);
+	}
+
+	/**
+	 * 记录一次操作的耗时及处理量
+	 * @param operation	操作名
+	 * @param label	表名或pathLabel得出的路径标签
+	 * @param start	start()的返回值
+	 * @param success	是否成功
+	 * @param rows	处理的行数
+	 * @param bytes	处理的字节数
+	 */
+	public static void record(String operation, String label, long start, boolean success, long rows, long bytes){
+		MetricsRegistry current = registry;
+		if(null!=current && 0!=start){
+			current.record(operation, label, success, System.nanoTime() - start, rows, bytes);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.cp.metrics;
+
+/**
+ * 指标注册表，接收各操作的耗时及处理量
+ * 默认实现为HdrMetricsRegistry；可实现本接口把指标转发至其他监控系统，通过Metrics.setRegistry替换
+ * record在每次操作后由调用线程执行，实现须线程安全且开销尽量小
+ */
+public interface MetricsRegistry{
+
+	/**
+	 * 记录一次操作
+	 * @param operation	操作名，如hbase.put、hdfs.upload
+	 * @param label	表名或路径标签（Metrics.pathLabel）
+	 * @param success	是否成功
+	 * @param nanos	耗时（纳秒）
+	 * @param rows	处理的行数，没有时为0
+	 * @param bytes	处理的字节数，没有时为0
+	 */
+	void record(String operation, String label, boolean success, long nanos, long rows, long bytes);
+}
@@ -0,0 +1,62 @@
+package com.cp.hbase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.Result;
+
+/**
+ * 批量查询结果
+ * 查到的行按请求顺序保存在rows中，不存在的行键记录在missing中
+ */
+public class MultiGetResult{
+
+	private final Map<String, Result> rows;
+	private final List<String> missing;
+
+	MultiGetResult(Map<String, Result> rows, List<String> missing){
+		this.rows = Collections.unmodifiableMap(rows);
+		this.missing = Collections.unmodifiableList(missing);
+	}
+
+	/**
+	 * 按请求顺序合并各分组的查询结果
+	 * @param rowKeys	请求的行键
+	 * @param found	各分组查到的行
+	 */
+	static MultiGetResult merge(String[] rowKeys, Map<String, Result> found){
+
+		Map<String, Result> rows = new LinkedHashMap<String, Result>();
+		List<String> missing = new ArrayList<String>();
+		for(String rowKey : rowKeys){
+			Result result = found.get(rowKey);
+			if(null==result || result.isEmpty()){
+				missing.add(rowKey);
+			}else{
+				rows.put(rowKey, result);
+			}
+		}
+		return new MultiGetResult(rows, missing);
+	}
+
+	/**
+	 * 查到的行，行键 -> 行记录
+	 */
+	public Map<String, Result> getRows(){
+		return rows;
+	}
+
+	/**
+	 * 不存在的行键
+	 */
+	public List<String> getMissing(){
+		return missing;
+	}
+
+	public Result get(String rowKey){
+		return rows.get(rowKey);
+	}
+}
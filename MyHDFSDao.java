@@ -1,17 +1,20 @@
 package com.cp.hdfs;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ByteBufferReadable;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+import com.cp.metrics.Metrics;
+
 
 public class MyHDFSDao {
 	
@@ -30,38 +33,183 @@ public class MyHDFSDao {
 	}
 	
 	/**
-	 * put增   上传文件 至 HDFS
+	 * 使用指定配置获取文件系统客户端，如连接进程内的测试集群
+	 * @param configuration	HDFS配置
+	 */
+	public static void init(Configuration configuration) throws IOException{
+		
+		conf = configuration;
+		fs = FileSystem.get(conf);
+	}
+	
+	/**
+	 * put增   上传文件 至 HDFS，使用默认复制参数
 	 * @param localFilePath	待上传的文件路径
 	 * @param destFilePath	上传至HDFS的文件路径
 	 */
 	public static void uploadFile(String localFilePath, String destFilePath) throws IOException{
-
-		//打开HDFS目标文件的输出流		hdfs://master:9000/count/input/wordCount.txt
-		FSDataOutputStream os = fs.create(new Path(destFilePath));
+		uploadFile(localFilePath, destFilePath, new CopyOptions());
+	}
+	
+	/**
+	 * put增   上传文件 至 HDFS
+	 * 本地以FileChannel读取至缓冲区，按指定的块大小、副本数、缓冲区大小创建HDFS文件，两端的流在结束或失败时关闭
+	 * @param localFilePath	待上传的文件路径
+	 * @param destFilePath	上传至HDFS的文件路径		hdfs://master:9000/count/input/wordCount.txt
+	 * @param options	复制参数，设置了压缩格式或SequenceFile模式时经压缩层上传
+	 * @return	上传的字节数
+	 */
+	public static long uploadFile(String localFilePath, String destFilePath, CopyOptions options) throws IOException{
 		
-		//打开本地文件的输入流，以字节流形式写到目标文件输出流		"/home/hadoop/tmp/fileToHDFS.txt"
-		FileInputStream is = new FileInputStream(localFilePath);
+		if(options.isCompressed()){
+			return uploadCompressed(localFilePath, destFilePath, options).getBytes();
+		}
+		Path dest = new Path(destFilePath);
+		long blockSize = (options.getBlockSize() > 0) ? options.getBlockSize() : fs.getDefaultBlockSize(dest);
+		short replication = (options.getReplication() > 0) ? options.getReplication() : fs.getDefaultReplication(dest);
 		
-		IOUtils.copy(is, os);
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
+		
+		//打开本地文件的通道，以字节流形式写到目标文件输出流		"/home/hadoop/tmp/fileToHDFS.txt"
+		FileChannel in = FileChannel.open(Paths.get(localFilePath), StandardOpenOption.READ);
+		try{
+			ProgressTracker progress = new ProgressTracker(destFilePath, in.size(), options.getListener(), options.getProgressIntervalMs());
+			
+			//打开HDFS目标文件的输出流
+			FSDataOutputStream os = fs.create(dest, options.isOverwrite(), options.getBufferSize(), replication, blockSize);
+			try{
+				ByteBuffer buffer = ByteBuffer.allocate(options.getBufferSize());	//HDFS输出流只接受字节数组，使用堆内缓冲区
+				int n;
+				while((n = in.read(buffer)) >= 0){
+					os.write(buffer.array(), 0, n);
+					buffer.clear();
+					progress.add(n);
+				}
+			}finally{
+				os.close();		//关闭时等待数据管道确认
+			}
+			bytes = progress.getTransferred();
+			progress.done();
+			success = true;
+			return bytes;
+		}finally{
+			in.close();
+			Metrics.record("hdfs.upload", Metrics.pathLabel(destFilePath), start, success, 0, bytes);
+		}
 	}
 	
 	/**
-	 * get  下载HDFS文件 至 本地
+	 * get  下载HDFS文件 至 本地，使用默认复制参数
 	 * @param destFilePath	待下载的HDFS文件路径
 	 * @param localFilePath	本地文件保存路径
 	 */
 	public static void downloadFile(String destFilePath, String localFilePath) throws IllegalArgumentException, IOException{
+		downloadFile(destFilePath, localFilePath, new CopyOptions());
+	}
+	
+	/**
+	 * get  下载HDFS文件 至 本地
+	 * HDFS流支持按ByteBuffer读取时直接读入缓冲区（可为堆外缓冲区），再由FileChannel写入本地文件
+	 * @param destFilePath	待下载的HDFS文件路径
+	 * @param localFilePath	本地文件保存路径
+	 * @param options	复制参数，使用其中的缓冲区、覆盖及进度回调设置，设置了压缩格式或SequenceFile模式时经压缩层下载
+	 * @return	下载的字节数
+	 */
+	public static long downloadFile(String destFilePath, String localFilePath, CopyOptions options) throws IllegalArgumentException, IOException{
 		
-		//打开HDFS文件的输入流
-		FSDataInputStream is = fs.open(new Path(destFilePath));
-		
-		//打开本地文件的输出流，将HDFS文件的输入流以字节流形式写到本地文件输出流
-		FileOutputStream os = new FileOutputStream(localFilePath);
-		IOUtils.copy(is, os);
+		if(options.isCompressed()){
+			return downloadCompressed(destFilePath, localFilePath, options).getBytes();
+		}
+		Path src = new Path(destFilePath);
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
 		
+		//打开HDFS文件的输入流
+		FSDataInputStream is = fs.open(src, options.getBufferSize());
+		try{
+			ProgressTracker progress = new ProgressTracker(destFilePath, fs.getFileStatus(src).getLen(), options.getListener(), options.getProgressIntervalMs());
+			
+			//打开本地文件的通道，将HDFS文件的输入流写到本地文件
+			FileChannel out = options.isOverwrite()
+					? FileChannel.open(Paths.get(localFilePath), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+					: FileChannel.open(Paths.get(localFilePath), StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+			try{
+				//HDFS流不支持按ByteBuffer读取时只能经字节数组读取，直接缓冲区没有意义
+				boolean byteBufferReadable = is.getWrappedStream() instanceof ByteBufferReadable;
+				ByteBuffer buffer = (options.isDirectBuffer() && byteBufferReadable) ? ByteBuffer.allocateDirect(options.getBufferSize()) : ByteBuffer.allocate(options.getBufferSize());
+				int n;
+				while((n = read(is, buffer, byteBufferReadable)) >= 0){
+					buffer.flip();
+					while(buffer.hasRemaining()){
+						out.write(buffer);
+					}
+					buffer.clear();
+					progress.add(n);
+				}
+			}finally{
+				out.close();
+			}
+			bytes = progress.getTransferred();
+			progress.done();
+			success = true;
+			return bytes;
+		}finally{
+			is.close();
+			Metrics.record("hdfs.download", Metrics.pathLabel(destFilePath), start, success, 0, bytes);
+		}
 	}
 	
+	/**
+	 * put增   压缩上传文件 至 HDFS，边读边压缩，不落地临时文件
+	 * @param localFilePath	待上传的文件路径
+	 * @param destFilePath	上传至HDFS的文件路径，压缩格式为CopyOptions.CODEC_BY_EXTENSION时按其扩展名选择
+	 * @param options	复制参数，使用其中的压缩格式、SequenceFile模式等设置
+	 * @return	传输结果，包括原始及存储字节数、压缩比和吞吐量
+	 */
+	public static TransferReport uploadCompressed(String localFilePath, String destFilePath, CopyOptions options) throws IOException{
+		return CodecCopier.upload(fs, localFilePath, destFilePath, options);
+	}
+	
+	/**
+	 * get  下载HDFS文件 至 本地并解压
+	 * @param destFilePath	待下载的HDFS文件路径，压缩格式为CopyOptions.CODEC_BY_EXTENSION时按其扩展名选择
+	 * @param localFilePath	本地文件保存路径
+	 * @param options	复制参数，需与上传时的压缩格式、SequenceFile模式一致
+	 * @return	传输结果，包括解压后及存储字节数、压缩比和吞吐量
+	 */
+	public static TransferReport downloadCompressed(String destFilePath, String localFilePath, CopyOptions options) throws IOException{
+		return CodecCopier.download(fs, destFilePath, localFilePath, options);
+	}
 	
+	/**
+	 * get  按块并行下载大文件 至 本地
+	 * 文件按HDFS块切分为若干范围，各线程以定位读取下载并写入本地文件的对应偏移
+	 * @param destFilePath	待下载的HDFS文件路径
+	 * @param localFilePath	本地文件保存路径
+	 * @param parallelism	同时下载的范围数，内存占用为parallelism * 缓冲区大小
+	 * @param options	复制参数，使用其中的缓冲区、覆盖及进度回调设置
+	 * @return	下载的字节数
+	 */
+	public static long downloadFileParallel(String destFilePath, String localFilePath, int parallelism, CopyOptions options) throws IOException{
+		return RangedDownloader.download(fs, destFilePath, localFilePath, parallelism, options);
+	}
 	
+	/**
+	 * 读入缓冲区，HDFS流不支持按ByteBuffer读取时读入缓冲区的底层数组
+	 */
+	private static int read(FSDataInputStream is, ByteBuffer buffer, boolean byteBufferReadable) throws IOException{
+		
+		if(byteBufferReadable){
+			return is.read(buffer);
+		}
+		int n = is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		if(n > 0){
+			buffer.position(buffer.position() + n);
+		}
+		return n;
+	}
 	
 }
@@ -0,0 +1,156 @@
+package com.cp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * 单个{操作, 标签, 结果}的计数及HDR延迟直方图
+ * 记录路径只有Recorder.recordValue和LongAdder累加，不加锁；
+ * 读取时把Recorder的区间直方图合并进累计直方图，累计值由Recorder导出，不另行记录
+ * 直方图使用压缩（packed）存储并按需扩展，内存与实际出现的延迟分布范围成正比，通常只有几KB
+ */
+public class OperationStats implements OperationStatsMXBean{
+
+	private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);	//超过的按该值记录
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final String operation;
+	private final String label;
+	private final boolean success;
+
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS, true);
+	private final Histogram total = new PackedHistogram(SIGNIFICANT_DIGITS);
+	private Histogram interval = null;
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private volatile long startedAt = System.nanoTime();		//创建或上次reset的时间，用于按墙钟时间计算吞吐量
+
+	OperationStats(String operation, String label, boolean success){
+		this.operation = operation;
+		this.label = label;
+		this.success = success;
+	}
+
+	void record(long latencyNanos, long rowCount, long byteCount){
+
+		recorder.recordValue(Math.max(0, Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS)));
+		count.increment();
+		if(0!=rowCount){
+			rows.add(rowCount);
+		}
+		if(0!=byteCount){
+			bytes.add(byteCount);
+		}
+	}
+
+	private synchronized Histogram snapshot(){
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+		return total;
+	}
+
+	private synchronized long percentileMicros(double percentile){
+		return TimeUnit.NANOSECONDS.toMicros(snapshot().getValueAtPercentile(percentile));
+	}
+
+	@Override
+	public String getOperation(){
+		return operation;
+	}
+
+	@Override
+	public String getLabel(){
+		return label;
+	}
+
+	@Override
+	public String getOutcome(){
+		return success ? "success" : "failure";
+	}
+
+	@Override
+	public long getCount(){
+		return count.sum();
+	}
+
+	@Override
+	public long getRows(){
+		return rows.sum();
+	}
+
+	@Override
+	public long getBytes(){
+		return bytes.sum();
+	}
+
+	@Override
+	public synchronized double getMeanMicros(){
+		return snapshot().getMean() / 1000;
+	}
+
+	@Override
+	public long getP50Micros(){
+		return percentileMicros(50);
+	}
+
+	@Override
+	public long getP95Micros(){
+		return percentileMicros(95);
+	}
+
+	@Override
+	public long getP99Micros(){
+		return percentileMicros(99);
+	}
+
+	@Override
+	public long getP999Micros(){
+		return percentileMicros(99.9);
+	}
+
+	@Override
+	public synchronized long getMaxMicros(){
+		return TimeUnit.NANOSECONDS.toMicros(snapshot().getMaxValue());
+	}
+
+	@Override
+	public double getRowsPerSecond(){
+		return perSecond(rows.sum());
+	}
+
+	@Override
+	public double getBytesPerSecond(){
+		return perSecond(bytes.sum());
+	}
+
+	/**
+	 * 按创建（或上次reset）以来的墙钟时间计算速率，多线程并发的操作不会重复计算时间
+	 */
+	private double perSecond(long amount){
+		long elapsed = System.nanoTime() - startedAt;
+		return (elapsed <= 0) ? 0 : amount * 1e9 / elapsed;
+	}
+
+	@Override
+	public synchronized void reset(){
+		snapshot();
+		total.reset();
+		count.reset();
+		rows.reset();
+		bytes.reset();
+		startedAt = System.nanoTime();
+	}
+
+	@Override
+	public String toString(){
+		return operation + "[" + label + "," + getOutcome() + "]：" + getCount() + "次，p50=" + getP50Micros() + "us，p99=" + getP99Micros() + "us，max=" + getMaxMicros() + "us" +
+				(0==getRows() ? "" : String.format("，%.0f行/秒", getRowsPerSecond())) +
+				(0==getBytes() ? "" : String.format("，%.0f字节/秒", getBytesPerSecond()));
+	}
+}
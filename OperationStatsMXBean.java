@@ -0,0 +1,44 @@
+package com.cp.metrics;
+
+/**
+ * 单个{操作, 标签, 结果}的统计，通过JMX查看
+ * 延迟分位数为注册以来（或上次reset以来）的累计值，单位微秒
+ */
+public interface OperationStatsMXBean{
+
+	String getOperation();
+
+	String getLabel();
+
+	String getOutcome();
+
+	long getCount();
+
+	long getRows();
+
+	long getBytes();
+
+	double getMeanMicros();
+
+	long getP50Micros();
+
+	long getP95Micros();
+
+	long getP99Micros();
+
+	long getP999Micros();
+
+	long getMaxMicros();
+
+	/**
+	 * 注册（或上次reset）以来按墙钟时间计算的行吞吐量（行/秒）
+	 */
+	double getRowsPerSecond();
+
+	/**
+	 * 注册（或上次reset）以来按墙钟时间计算的字节吞吐量（字节/秒）
+	 */
+	double getBytesPerSecond();
+
+	void reset();
+}
@@ -0,0 +1,11 @@
+package com.cp.hdfs;
+
+/**
+ * 目标文件已存在时的处理方式
+ */
+public enum OverwritePolicy {
+	
+	OVERWRITE,		//覆盖
+	SKIP,			//跳过，计入跳过数
+	FAIL			//不覆盖，计为该文件的错误
+}
@@ -0,0 +1,581 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+/**
+ * 按Region并行扫描
+ * 根据RegionLocator取得的Region边界把扫描范围切分为子范围（每个Region可再细分），
+ * 由最多parallelism个工作线程按子范围顺序领取并扫描，结果经有界队列交给调用线程回调
+ * 有序模式下每个子范围一个队列，按子范围顺序依次消费，整体结果按行键有序；
+ * 行键加盐分桶时每个分桶一个队列，由工作线程预取，调用线程只按逻辑行键多路归并；
+ * 无序模式下共用一个队列，先扫到先回调
+ * 队列写满时工作线程阻塞等待，内存占用与队列容量成正比
+ * 每次扫描使用自己的工作线程（不超过parallelism个），扫描结束时设置停止标记，工作线程完成当前RPC后关闭扫描器退出，不中断线程；
+ * 工作线程可能因队列写满而阻塞，若使用共享线程池，回调中再调用getRows等使用该线程池的方法会死锁
+ */
+public class ParallelScanner{
+
+	private static final Result END = new Result();		//子范围扫描结束标记
+	private static final int QUEUE_CAPACITY = 1000;		//每个结果队列的容量（行）
+	private static final int MIN_BUCKET_CAPACITY = 100;		//分桶归并时每个分桶队列的最小容量（行）
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long POLL_MS = 100;
+
+	private final Connection conn;
+	private final TableName tableName;
+	private final ScanOptions options;
+	private final RowKeyCodec codec;
+	private final int parallelism;
+	private final int splitsPerRegion;
+	private final boolean ordered;
+
+	private volatile boolean stopped = false;
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+	/**
+	 * @param conn	HBase数据库连接
+	 * @param tableName	表名
+	 * @param options	扫描参数，起止行键或前缀限定整体范围
+	 * @param codec	行键编解码器，分桶时每个分桶分别切分子范围
+	 * @param parallelism	同时进行的子扫描数
+	 * @param splitsPerRegion	每个Region切分的子范围数
+	 * @param ordered	是否按行键顺序回调
+	 */
+	ParallelScanner(Connection conn, String tableName, ScanOptions options, RowKeyCodec codec, int parallelism, int splitsPerRegion, boolean ordered){
+		this.conn = conn;
+		this.tableName = TableName.valueOf(tableName);
+		this.options = options;
+		this.codec = codec;
+		this.parallelism = Math.max(1, parallelism);
+		this.splitsPerRegion = Math.max(1, splitsPerRegion);
+		this.ordered = ordered;
+	}
+
+	/**
+	 * 执行并行扫描，在调用线程中逐行回调handler，handler返回false时停止扫描
+	 * @return	回调的行数
+	 */
+	long scan(final ResultHandler handler) throws IOException{
+
+		//每个分桶一组子范围，组内子范围按行键有序
+		final List<List<byte[][]>> streams = new ArrayList<List<byte[][]>>();
+		final List<byte[][]> ranges = new ArrayList<byte[][]>();
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try{
+			Pair<byte[][], byte[][]> startEndKeys = locator.getStartEndKeys();
+			for(byte[][] range : bucketRanges(codec, options)){
+				List<byte[][]> stream = splitRanges(startEndKeys, range[0], range[1], splitsPerRegion);
+				if(!stream.isEmpty()){
+					streams.add(stream);
+					ranges.addAll(stream);
+				}
+			}
+		}finally{
+			locator.close();
+		}
+		if(ranges.isEmpty()){
+			return 0;
+		}
+
+		try{
+			if(!ordered){
+				return scanUnordered(ranges, handler);
+			}else if(streams.size()==1){
+				return scanOrdered(ranges, handler);
+			}else{
+				return scanMerged(streams, handler);
+			}
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("并行扫描被中断").initCause(e);
+		}finally{
+			stopped = true;		//通知工作线程退出
+		}
+	}
+
+	/**
+	 * 无序模式：所有子范围共用一个队列，先扫到先回调
+	 */
+	private long scanUnordered(List<byte[][]> ranges, ResultHandler handler) throws IOException, InterruptedException{
+
+		List<BlockingQueue<Result>> queues = new ArrayList<BlockingQueue<Result>>();
+		queues.add(new ArrayBlockingQueue<Result>(QUEUE_CAPACITY));
+		ExecutorService executor = startWorkers(ranges, queues, Math.min(parallelism, ranges.size()));
+		try{
+			long count = 0;
+			int finished = 0;
+			while(finished < ranges.size()){
+				Result result = take(queues.get(0));
+				if(result==END){
+					finished++;
+				}else if(!emit(handler, result, ++count)){
+					break;
+				}
+			}
+			return count;
+		}finally{
+			stopped = true;
+			executor.shutdown();		//不中断工作线程：中断阻塞在RPC中的线程可能关闭共享连接的套接字；工作线程看到stopped后关闭扫描器退出
+		}
+	}
+
+	/**
+	 * 有序模式（单个分桶）：每个子范围一个队列，按子范围顺序依次消费
+	 * 工作线程按子范围顺序领取，最小的未完成子范围总有线程在扫描，不会死锁
+	 */
+	private long scanOrdered(List<byte[][]> ranges, ResultHandler handler) throws IOException, InterruptedException{
+
+		List<BlockingQueue<Result>> queues = new ArrayList<BlockingQueue<Result>>();
+		for(int i = 0; i < ranges.size(); i++){
+			queues.add(new ArrayBlockingQueue<Result>(QUEUE_CAPACITY));
+		}
+		ExecutorService executor = startWorkers(ranges, queues, Math.min(parallelism, ranges.size()));
+		try{
+			long count = 0;
+			for(int current = 0; current < ranges.size(); ){
+				Result result = take(queues.get(current));
+				if(result==END){
+					current++;
+				}else if(!emit(handler, result, ++count)){
+					break;
+				}
+			}
+			return count;
+		}finally{
+			stopped = true;
+			executor.shutdown();		//不中断工作线程：中断阻塞在RPC中的线程可能关闭共享连接的套接字；工作线程看到stopped后关闭扫描器退出
+		}
+	}
+
+	/**
+	 * 有序模式（多个分桶）：每个分桶一个有界队列，由最多parallelism个工作线程预取，调用线程按去掉分桶前缀后的逻辑行键多路归并
+	 * 分桶数多于线程数时每个线程轮流负责若干分桶，只向有空位的队列写入，不会因某个队列写满而阻塞其他分桶，
+	 * 归并需要的每个分桶总能取得下一行，不会死锁；各队列容量之和约为QUEUE_CAPACITY
+	 */
+	private long scanMerged(final List<List<byte[][]>> streams, ResultHandler handler) throws IOException, InterruptedException{
+
+		final int buckets = streams.size();
+		final List<BlockingQueue<Result>> queues = new ArrayList<BlockingQueue<Result>>(buckets);
+		int capacity = Math.max(MIN_BUCKET_CAPACITY, QUEUE_CAPACITY / buckets);
+		for(int i = 0; i < buckets; i++){
+			queues.add(new ArrayBlockingQueue<Result>(capacity));
+		}
+
+		int workers = Math.min(parallelism, buckets);
+		ExecutorService executor = newExecutor(workers);
+		try{
+			for(int i = 0; i < workers; i++){
+				final List<Integer> owned = new ArrayList<Integer>();
+				for(int bucket = i; bucket < buckets; bucket += workers){
+					owned.add(bucket);
+				}
+				executor.execute(new Runnable(){
+					@Override
+					public void run(){
+						try{
+							prefetch(streams, queues, owned);
+						}catch(Throwable e){
+							error.compareAndSet(null, e);
+							stopped = true;
+						}
+					}
+				});
+			}
+
+			final int prefixLength = codec.getPrefixLength();
+			PriorityQueue<Head> heads = new PriorityQueue<Head>(buckets, new Comparator<Head>(){
+				@Override
+				public int compare(Head a, Head b){
+					byte[] ra = a.current.getRow();
+					byte[] rb = b.current.getRow();
+					return Bytes.compareTo(ra, prefixLength, ra.length - prefixLength, rb, prefixLength, rb.length - prefixLength);
+				}
+			});
+			for(int i = 0; i < buckets; i++){
+				Result first = take(queues.get(i));
+				if(first!=END){
+					heads.add(new Head(i, first));
+				}
+			}
+
+			long count = 0;
+			Head head;
+			while(null!=(head = heads.poll())){
+				if(!emit(handler, head.current, ++count)){
+					break;
+				}
+				Result next = take(queues.get(head.bucket));
+				if(next!=END){
+					head.current = next;
+					heads.add(head);
+				}
+			}
+			return count;
+		}finally{
+			stopped = true;
+			executor.shutdown();		//不中断工作线程，其看到stopped后关闭扫描器退出
+		}
+	}
+
+	/**
+	 * 归并中一个分桶的当前行
+	 */
+	private static final class Head{
+
+		final int bucket;
+		Result current;
+
+		Head(int bucket, Result current){
+			this.bucket = bucket;
+			this.current = current;
+		}
+	}
+
+	/**
+	 * 工作线程：轮流向所负责分桶的队列写入，每次写满该队列的空位，分桶结束时写入结束标记；所有队列都满时短暂等待
+	 * 每个队列只有一个写入线程，有空位时offer必定成功
+	 */
+	private void prefetch(List<List<byte[][]>> streams, List<BlockingQueue<Result>> queues, List<Integer> owned) throws IOException{
+
+		Table table = HBaseDao.getTable(tableName.getNameAsString());
+		List<Cursor> cursors = new ArrayList<Cursor>();
+		try{
+			for(int bucket : owned){
+				cursors.add(new Cursor(table, streams.get(bucket), queues.get(bucket)));
+			}
+			List<Cursor> active = new ArrayList<Cursor>(cursors);
+			while(!stopped && !active.isEmpty()){
+				boolean progressed = false;
+				for(int i = 0; i < active.size() && !stopped; ){
+					Cursor cursor = active.get(i);
+					boolean finished = false;
+					for(int room = cursor.queue.remainingCapacity(); room > 0 && !stopped; room--){
+						progressed = true;
+						if(!cursor.advance()){
+							cursor.queue.offer(END);
+							finished = true;
+							break;
+						}
+						cursor.queue.offer(cursor.current);
+					}
+					if(finished){
+						active.remove(i);
+					}else{
+						i++;
+					}
+				}
+				if(!progressed){
+					LockSupport.parkNanos(IDLE_NANOS);		//所负责的队列都已写满，等待调用线程消费
+				}
+			}
+		}finally{
+			try{
+				for(Cursor cursor : cursors){
+					cursor.close();
+				}
+			}finally{
+				HBaseDao.releaseTable(table);
+			}
+		}
+	}
+
+	/**
+	 * 一个分桶的游标，按顺序依次扫描该分桶的各子范围，由负责该分桶的工作线程拉取
+	 */
+	private final class Cursor{
+
+		private final Table table;
+		private final List<byte[][]> ranges;
+		final BlockingQueue<Result> queue;
+		private int nextRange = 0;
+		private ResultScanner scanner = null;
+		Result current = null;
+
+		Cursor(Table table, List<byte[][]> ranges, BlockingQueue<Result> queue){
+			this.table = table;
+			this.ranges = ranges;
+			this.queue = queue;
+		}
+
+		/**
+		 * 移动到下一行，没有更多结果时返回false
+		 */
+		boolean advance() throws IOException{
+
+			while(true){
+				if(null==scanner){
+					if(nextRange >= ranges.size()){
+						current = null;
+						return false;
+					}
+					byte[][] range = ranges.get(nextRange++);
+					Scan scan = options.toScan();
+					scan.withStartRow(range[0]);
+					scan.withStopRow(range[1]);
+					scanner = table.getScanner(scan);
+				}
+				current = scanner.next();
+				if(null!=current){
+					return true;
+				}
+				scanner.close();
+				scanner = null;
+			}
+		}
+
+		void close(){
+			if(null!=scanner){
+				scanner.close();
+				scanner = null;
+			}
+		}
+	}
+
+	/**
+	 * 为本次扫描创建workers个工作线程，按子范围顺序领取并扫描
+	 * @param queues	只有一个队列时所有子范围共用，否则每个子范围一个队列
+	 * @return	工作线程池，扫描结束时由调用方关闭
+	 */
+	private ExecutorService startWorkers(final List<byte[][]> ranges, final List<BlockingQueue<Result>> queues, int workers){
+
+		ExecutorService executor = newExecutor(workers);
+		final AtomicInteger nextRange = new AtomicInteger(0);
+		for(int i = 0; i < workers; i++){
+			executor.execute(new Runnable(){
+				@Override
+				public void run(){
+					int index;
+					while(!stopped && (index = nextRange.getAndIncrement()) < ranges.size()){
+						BlockingQueue<Result> queue = queues.get(queues.size()==1 ? 0 : index);
+						try{
+							scanRange(ranges.get(index), queue);
+							put(queue, END);
+						}catch(Throwable e){
+							error.compareAndSet(null, e);
+							stopped = true;
+						}
+					}
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * 本次扫描专用的守护线程池
+	 */
+	private ExecutorService newExecutor(int threads){
+
+		final String prefix = "hbase-scan-" + tableName.getNameAsString() + "-";
+		final AtomicInteger threadId = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, prefix + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 从队列取下一行或结束标记，期间检查工作线程是否出错
+	 */
+	private Result take(BlockingQueue<Result> queue) throws IOException, InterruptedException{
+
+		while(true){
+			Result result = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+			checkError();
+			if(null!=result){
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * 回调一行，返回是否继续扫描
+	 */
+	private boolean emit(ResultHandler handler, Result result, long count) throws IOException{
+		long limit = options.getLimit();
+		return handler.onResult(result) && (limit <= 0 || count < limit);
+	}
+
+	private void scanRange(byte[][] range, BlockingQueue<Result> queue) throws IOException, InterruptedException{
+
+		Scan scan = options.toScan();
+		scan.withStartRow(range[0]);
+		scan.withStopRow(range[1]);
+
+		Table table = HBaseDao.getTable(tableName.getNameAsString());
+		try{
+			ResultScanner scanner = table.getScanner(scan);
+			try{
+				Result result;
+				while(!stopped && null!=(result = scanner.next())){
+					put(queue, result);
+				}
+			}finally{
+				scanner.close();
+			}
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+	}
+
+	private void put(BlockingQueue<Result> queue, Result result) throws InterruptedException{
+		while(!stopped && !queue.offer(result, POLL_MS, TimeUnit.MILLISECONDS)){
+		}
+	}
+
+	private void checkError() throws IOException{
+
+		Throwable e = error.get();
+		if(null==e){
+			return;
+		}
+		if(e instanceof IOException){
+			throw (IOException) e;
+		}
+		throw new IOException("并行扫描失败", e);
+	}
+
+	/**
+	 * 扫描参数限定的整体行键范围{起始, 结束}，空数组表示不限
+	 */
+	static byte[][] scanRange(ScanOptions options){
+
+		byte[] prefix = options.getRowPrefix();
+		if(null!=prefix){
+			return new byte[][]{prefix, prefixStopRow(prefix)};
+		}
+		byte[] start = options.getStartRow();
+		byte[] stop = options.getStopRow();
+		return new byte[][]{
+			null==start ? HConstants.EMPTY_START_ROW : start,
+			null==stop ? HConstants.EMPTY_END_ROW : stop
+		};
+	}
+
+	/**
+	 * 各分桶内的物理扫描范围{起始, 结束}：分桶前缀 + 逻辑范围
+	 * 逻辑前缀能确定分桶时只扫描该分桶
+	 */
+	static List<byte[][]> bucketRanges(RowKeyCodec codec, ScanOptions options){
+
+		byte[][] range = scanRange(options);
+		byte[][] prefixes = codec.getBucketPrefixes();
+		if(null!=options.getRowPrefix()){
+			byte[] prefix = codec.getBucketPrefix(options.getRowPrefix());
+			if(null!=prefix){
+				prefixes = new byte[][]{prefix};
+			}
+		}
+
+		List<byte[][]> ranges = new ArrayList<byte[][]>();
+		for(byte[] prefix : prefixes){
+			byte[] start = Bytes.add(prefix, range[0]);
+			byte[] stop = range[1].length > 0 ? Bytes.add(prefix, range[1]) : (prefix.length > 0 ? prefixStopRow(prefix) : HConstants.EMPTY_END_ROW);
+			ranges.add(new byte[][]{start, stop});
+		}
+		return ranges;
+	}
+
+	/**
+	 * 前缀扫描的结束行键：去掉末尾的0xFF后将最后一个字节加1
+	 */
+	static byte[] prefixStopRow(byte[] prefix){
+
+		for(int i = prefix.length - 1; i >= 0; i--){
+			if(prefix[i]!=(byte) 0xFF){
+				byte[] stop = Bytes.copy(prefix, 0, i + 1);
+				stop[i]++;
+				return stop;
+			}
+		}
+		return HConstants.EMPTY_END_ROW;
+	}
+
+	/**
+	 * 将[start, stop)按Region边界切分，每个Region内再均分为splitsPerRegion份
+	 * @param startEndKeys	各Region的起止行键
+	 * @param start	起始行键，空数组表示不限
+	 * @param stop	结束行键，空数组表示不限
+	 * @param splitsPerRegion	每个Region切分的份数
+	 * @return	按行键顺序排列的子范围{起始, 结束}
+	 */
+	static List<byte[][]> splitRanges(Pair<byte[][], byte[][]> startEndKeys, byte[] start, byte[] stop, int splitsPerRegion){
+
+		List<byte[][]> ranges = new ArrayList<byte[][]>();
+		byte[][] starts = startEndKeys.getFirst();
+		byte[][] ends = startEndKeys.getSecond();
+		for(int i = 0; i < starts.length; i++){
+
+			//求Region范围与扫描范围的交集
+			byte[] lo = max(starts[i], start);
+			byte[] hi = min(ends[i], stop);
+			if(hi.length > 0 && Bytes.compareTo(lo, hi) >= 0){
+				continue;
+			}
+			if(splitsPerRegion <= 1){
+				ranges.add(new byte[][]{lo, hi});
+				continue;
+			}
+
+			//空的起止行键以0x00 / 0xFF..填充后计算切分点，首尾仍保持不限
+			byte[] splitLo = lo.length==0 ? new byte[]{0} : lo;
+			byte[] splitHi = hi.length==0 ? new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF} : hi;
+			byte[][] points = Bytes.compareTo(splitLo, splitHi) < 0 ? Bytes.split(splitLo, splitHi, splitsPerRegion - 1) : null;
+			if(null==points){
+				ranges.add(new byte[][]{lo, hi});
+				continue;
+			}
+			byte[] from = lo;
+			for(int j = 1; j < points.length - 1; j++){
+				if(Bytes.compareTo(points[j], from) > 0){
+					ranges.add(new byte[][]{from, points[j]});
+					from = points[j];
+				}
+			}
+			ranges.add(new byte[][]{from, hi});
+		}
+		return ranges;
+	}
+
+	private static byte[] max(byte[] regionStart, byte[] start){
+		if(regionStart.length==0){
+			return start;
+		}
+		return (start.length==0 || Bytes.compareTo(regionStart, start) >= 0) ? regionStart : start;
+	}
+
+	private static byte[] min(byte[] regionEnd, byte[] stop){
+		if(regionEnd.length==0){
+			return stop;
+		}
+		return (stop.length==0 || Bytes.compareTo(regionEnd, stop) <= 0) ? regionEnd : stop;
+	}
+}
@@ -0,0 +1,66 @@
+package com.cp.hdfs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 累计传输字节数，按间隔调用TransferListener
+ * 可由多个线程同时累计，同一时刻只有一个线程触发回调
+ */
+class ProgressTracker {
+	
+	private final String path;
+	private final long total;
+	private final TransferListener listener;
+	private final long intervalMs;
+	private final long startTime = System.currentTimeMillis();
+	private final AtomicLong transferred = new AtomicLong();
+	private final AtomicLong lastReport = new AtomicLong(startTime);
+	
+	/**
+	 * @param path	传输中的文件
+	 * @param total	文件总字节数，未知时为-1
+	 * @param listener	进度回调，为null时只累计
+	 * @param intervalMs	回调间隔（毫秒）
+	 */
+	ProgressTracker(String path, long total, TransferListener listener, long intervalMs){
+		this.path = path;
+		this.total = total;
+		this.listener = listener;
+		this.intervalMs = intervalMs;
+	}
+	
+	/**
+	 * 累计已传输的字节数，距上次回调超过间隔时回调
+	 */
+	void add(long bytes){
+		
+		long current = transferred.addAndGet(bytes);
+		if(null==listener){
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long last = lastReport.get();
+		if(now - last >= intervalMs && lastReport.compareAndSet(last, now)){
+			listener.onProgress(path, current, total, rate(current, now));
+		}
+	}
+	
+	/**
+	 * 传输结束，回调最终进度
+	 */
+	void done(){
+		if(null!=listener){
+			long current = transferred.get();
+			listener.onProgress(path, current, total, rate(current, System.currentTimeMillis()));
+		}
+	}
+	
+	long getTransferred(){
+		return transferred.get();
+	}
+	
+	private double rate(long bytes, long now){
+		long elapsed = now - startTime;
+		return (elapsed <= 0) ? 0 : bytes * 1000.0 / elapsed;
+	}
+}
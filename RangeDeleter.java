@@ -0,0 +1,190 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Pair;
+
+/**
+ * 按行键范围或前缀批量删除
+ * 按Region边界切分删除范围，由最多parallelism个工作线程各自只扫描行键（FirstKeyOnlyFilter + KeyOnlyFilter，不传输值），
+ * 每攒够batchSize行提交一次Delete，各线程共用一个速率上限，避免删除风暴影响在线读写
+ * 只使用ScanOptions中的起止行键或前缀，整行删除
+ */
+class RangeDeleter{
+
+	private final Connection conn;
+	private final ExecutorService pool;
+	private final TableName tableName;
+	private final ScanOptions options;
+	private final RowKeyCodec codec;
+	private final int parallelism;
+	private final int batchSize;
+	private final long maxRowsPerSecond;
+
+	private final AtomicLong deleted = new AtomicLong();
+	private volatile boolean stopped = false;
+	private long startTime;
+
+	/**
+	 * @param conn	HBase数据库连接
+	 * @param pool	执行删除的线程池
+	 * @param tableName	表名
+	 * @param options	删除范围，起止行键或前缀
+	 * @param codec	行键编解码器，分桶时每个分桶分别删除
+	 * @param parallelism	同时删除的Region数
+	 * @param batchSize	每次提交的Delete数
+	 * @param maxRowsPerSecond	每秒最多删除的行数，小于等于0时不限速
+	 */
+	RangeDeleter(Connection conn, ExecutorService pool, String tableName, ScanOptions options, RowKeyCodec codec, int parallelism, int batchSize, long maxRowsPerSecond){
+		this.conn = conn;
+		this.pool = pool;
+		this.tableName = TableName.valueOf(tableName);
+		this.options = options;
+		this.codec = codec;
+		this.parallelism = Math.max(1, parallelism);
+		this.batchSize = Math.max(1, batchSize);
+		this.maxRowsPerSecond = maxRowsPerSecond;
+	}
+
+	/**
+	 * 执行删除
+	 * @return	删除的行数
+	 */
+	long delete() throws IOException{
+
+		final List<byte[][]> ranges = new ArrayList<byte[][]>();
+		RegionLocator locator = conn.getRegionLocator(tableName);
+		try{
+			Pair<byte[][], byte[][]> startEndKeys = locator.getStartEndKeys();
+			for(byte[][] range : ParallelScanner.bucketRanges(codec, options)){
+				ranges.addAll(ParallelScanner.splitRanges(startEndKeys, range[0], range[1], 1));
+			}
+		}finally{
+			locator.close();
+		}
+		if(ranges.isEmpty()){
+			return 0;
+		}
+
+		startTime = System.currentTimeMillis();
+		final AtomicInteger nextRange = new AtomicInteger();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(int i = 0; i < Math.min(parallelism, ranges.size()); i++){
+			futures.add(pool.submit(new Callable<Void>(){
+				@Override
+				public Void call() throws IOException{
+					int index;
+					while(!stopped && (index = nextRange.getAndIncrement()) < ranges.size()){
+						deleteRange(ranges.get(index));
+					}
+					return null;
+				}
+			}));
+		}
+
+		IOException error = null;
+		try{
+			for(Future<Void> future : futures){
+				try{
+					future.get();
+				}catch(ExecutionException e){
+					if(null==error){
+						error = HBaseDao.toIOException(e.getCause());
+						stopped = true;		//通知其他线程提交完当前批次后退出
+					}
+				}
+			}
+		}catch(InterruptedException e){
+			stopped = true;
+			throw (InterruptedIOException) new InterruptedIOException("范围删除被中断").initCause(e);
+		}
+		if(null!=error){
+			throw error;
+		}
+		return deleted.get();
+	}
+
+	/**
+	 * 只扫描行键，按批次删除一个子范围
+	 */
+	private void deleteRange(byte[][] range) throws IOException{
+
+		Scan scan = new Scan().withStartRow(range[0]).withStopRow(range[1]);
+		scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+		scan.setCaching(batchSize);
+		scan.setCacheBlocks(false);		//删除扫描不污染块缓存
+
+		Table table = HBaseDao.getTable(tableName.getNameAsString());
+		try{
+			ResultScanner scanner = table.getScanner(scan);
+			try{
+				List<Delete> batch = new ArrayList<Delete>(batchSize);
+				Result result;
+				while(!stopped && null!=(result = scanner.next())){
+					batch.add(new Delete(result.getRow()));
+					if(batch.size() >= batchSize){
+						submit(table, batch);
+						batch = new ArrayList<Delete>(batchSize);
+					}
+				}
+				if(!stopped && !batch.isEmpty()){
+					submit(table, batch);
+				}
+			}finally{
+				scanner.close();
+			}
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+	}
+
+	/**
+	 * 提交一批Delete，超过速率上限时等待
+	 */
+	private void submit(Table table, List<Delete> batch) throws IOException{
+
+		List<byte[]> rows = new ArrayList<byte[]>(batch.size());
+		for(Delete delete : batch){
+			rows.add(delete.getRow());
+		}
+		try{
+			table.delete(batch);	//执行失败时batch中只保留未删除的记录
+		}finally{
+			for(byte[] row : rows){
+				HBaseDao.invalidateRow(tableName, row);
+			}
+		}
+		long total = deleted.addAndGet(rows.size());
+
+		if(maxRowsPerSecond > 0){
+			long wait = startTime + total * 1000 / maxRowsPerSecond - System.currentTimeMillis();
+			if(wait > 0){
+				try{
+					Thread.sleep(wait);
+				}catch(InterruptedException e){
+					throw (InterruptedIOException) new InterruptedIOException("范围删除被中断").initCause(e);
+				}
+			}
+		}
+	}
+}
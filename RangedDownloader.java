@@ -0,0 +1,169 @@
+package com.cp.hdfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 按块并行下载大文件
+ * 文件按HDFS块边界切分为若干范围，最多parallelism个工作线程按顺序领取范围，
+ * 各自以定位读取read(position, ...)读取，写入预先分配好长度的本地文件的相同偏移处
+ * 每个线程只有一个缓冲区，内存占用为parallelism * bufferSize，与文件大小无关
+ * 数据完整性依赖HDFS客户端读取时按DataNode上的块校验和校验（FileSystem的verifyChecksum须保持默认开启），
+ * 校验失败时客户端会标记坏副本并改从其他副本读取
+ */
+class RangedDownloader {
+	
+	private final FileSystem fs;
+	private final Path src;
+	private final String localFilePath;
+	private final int parallelism;
+	private final CopyOptions options;
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param src	待下载的HDFS文件
+	 * @param localFilePath	本地文件保存路径
+	 * @param parallelism	同时下载的范围数
+	 * @param options	复制参数，使用其中的缓冲区、覆盖及进度回调设置
+	 */
+	RangedDownloader(FileSystem fs, Path src, String localFilePath, int parallelism, CopyOptions options){
+		this.fs = fs;
+		this.src = src;
+		this.localFilePath = localFilePath;
+		this.parallelism = Math.max(1, parallelism);
+		this.options = options;
+	}
+	
+	/**
+	 * 并行下载并记录指标，供各DAO的downloadFileParallel调用
+	 * @param fs	HDFS文件系统客户端
+	 * @param destFilePath	待下载的HDFS文件路径
+	 * @param localFilePath	本地文件保存路径
+	 * @param parallelism	同时下载的范围数
+	 * @param options	复制参数
+	 * @return	下载的字节数
+	 */
+	static long download(FileSystem fs, String destFilePath, String localFilePath, int parallelism, CopyOptions options) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		long bytes = 0;
+		try{
+			bytes = new RangedDownloader(fs, new Path(destFilePath), localFilePath, parallelism, options).download();
+			success = true;
+			return bytes;
+		}finally{
+			Metrics.record("hdfs.downloadParallel", Metrics.pathLabel(destFilePath), start, success, 0, bytes);
+		}
+	}
+	
+	/**
+	 * 执行下载，失败时删除不完整的本地文件
+	 * @return	下载的字节数
+	 */
+	long download() throws IOException{
+		
+		FileStatus status = fs.getFileStatus(src);
+		final long length = status.getLen();
+		final long rangeSize = Math.max(status.getBlockSize(), options.getBufferSize());
+		final int ranges = (int) ((length + rangeSize - 1) / rangeSize);
+		final ProgressTracker progress = new ProgressTracker(src.toString(), length, options.getListener(), options.getProgressIntervalMs());
+		
+		File local = new File(localFilePath);
+		if(!options.isOverwrite() && local.exists()){
+			throw new FileAlreadyExistsException("本地文件已存在：" + localFilePath);
+		}
+		RandomAccessFile file = new RandomAccessFile(local, "rw");
+		boolean success = false;
+		try{
+			file.setLength(length);		//预先分配，各范围按偏移写入
+			final FileChannel out = file.getChannel();
+			
+			final AtomicInteger nextRange = new AtomicInteger();
+			int workers = Math.min(parallelism, Math.max(1, ranges));
+			ExecutorService pool = Executors.newFixedThreadPool(workers);
+			try{
+				List<Future<Void>> futures = new ArrayList<Future<Void>>();
+				for(int i = 0; i < workers; i++){
+					futures.add(pool.submit(new Callable<Void>(){
+						@Override
+						public Void call() throws IOException{
+							byte[] buffer = new byte[options.getBufferSize()];
+							FSDataInputStream in = fs.open(src, options.getBufferSize());
+							try{
+								int index;
+								while((index = nextRange.getAndIncrement()) < ranges){
+									long offset = index * rangeSize;
+									downloadRange(in, out, buffer, offset, Math.min(rangeSize, length - offset), progress);
+								}
+							}finally{
+								in.close();
+							}
+							return null;
+						}
+					}));
+				}
+				for(Future<Void> future : futures){
+					try{
+						future.get();
+					}catch(ExecutionException e){
+						nextRange.set(ranges);		//其他线程完成当前范围后退出
+						Throwable cause = e.getCause();
+						throw (cause instanceof IOException) ? (IOException) cause : new IOException("并行下载失败", cause);
+					}
+				}
+			}catch(InterruptedException e){
+				throw (InterruptedIOException) new InterruptedIOException("并行下载被中断").initCause(e);
+			}finally{
+				pool.shutdownNow();
+			}
+			out.force(false);
+			success = true;
+		}finally{
+			file.close();
+			if(!success){
+				local.delete();
+			}
+		}
+		progress.done();
+		return length;
+	}
+	
+	/**
+	 * 下载一个范围，写入本地文件的相同偏移处
+	 */
+	private void downloadRange(FSDataInputStream in, FileChannel out, byte[] buffer, long offset, long size, ProgressTracker progress) throws IOException{
+		
+		for(long done = 0; done < size; ){
+			int n = (int) Math.min(buffer.length, size - done);
+			in.readFully(offset + done, buffer, 0, n);		//定位读取，不移动流的当前位置
+			ByteBuffer data = ByteBuffer.wrap(buffer, 0, n);
+			long position = offset + done;
+			while(data.hasRemaining()){
+				position += out.write(data, position);
+			}
+			done += n;
+			progress.add(n);
+		}
+	}
+}
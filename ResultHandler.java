@@ -0,0 +1,18 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.client.Result;
+
+/**
+ * 扫描结果回调
+ * 在扫描线程中逐行同步回调，回调返回前不会取下一行，处理慢时扫描器自然暂停拉取
+ */
+public interface ResultHandler{
+
+	/**
+	 * @param result	一行记录（设置了batch时可能是一行的一部分）
+	 * @return	true继续扫描，false停止扫描
+	 */
+	boolean onResult(Result result) throws IOException;
+}
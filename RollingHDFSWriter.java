@@ -0,0 +1,378 @@
+package com.cp.hdfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 滚动写入器，持续向HDFS目录追加数据，不需要先落地本地文件
+ * 调用线程只把数据放入有界的内存缓冲区，由一个后台线程写入当前文件：
+ * 每隔flushIntervalMs执行hflush使数据对读取者可见，每隔syncIntervalMs执行hsync落盘，
+ * 文件达到maxFileSize或打开超过rollIntervalMs时关闭并重命名为正式文件名，再打开新文件
+ * 写入中的文件名以"_"开头、以".inprogress"结尾，MapReduce/Hive等会忽略；HDFS重命名是原子的，正式文件出现时已完整
+ * NameNode或DataNode短暂卡顿时由缓冲区吸收写入，缓冲区写满后write阻塞
+ * 线程安全；write/flush放入缓冲区与close互斥（读写锁），关闭标记之后不会再有数据入队，关闭后的写入抛出异常
+ * 后台线程出错后写入器不再可用，后续调用抛出该异常，缓冲区中未写入的数据丢弃并唤醒等待中的flush，未重命名的文件保留在目录中
+ */
+public class RollingHDFSWriter implements Closeable {
+	
+	private static final long POLL_MS = 100;
+	private static final String IN_PROGRESS_PREFIX = "_";
+	private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+	
+	//缓冲区中的一条数据或一次flush请求
+	private static final class Entry {
+		final byte[] data;
+		final CountDownLatch flushed;
+		
+		Entry(byte[] data, CountDownLatch flushed){
+			this.data = data;
+			this.flushed = flushed;
+		}
+	}
+	
+	private static final Entry CLOSE = new Entry(null, null);		//关闭标记
+	
+	private final FileSystem fs;
+	private final Path dir;
+	private final RollingOptions options;
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+	private final Semaphore buffer;		//缓冲区剩余字节数
+	private final Thread worker;
+	private final AtomicLong committedFiles = new AtomicLong();
+	private final AtomicLong writtenBytes = new AtomicLong();
+	private volatile IOException error = null;
+	private volatile boolean closed = false;
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();		//入队持读锁，close持写锁
+	
+	//以下字段只由后台线程访问
+	private final SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HHmmss");
+	private FSDataOutputStream out = null;
+	private Path inProgress = null;
+	private Path target = null;
+	private long fileBytes = 0;
+	private long openedAt = 0;
+	private long lastFlush = 0;
+	private long lastSync = 0;
+	private boolean unflushed = false;
+	private boolean unsynced = false;
+	private int sequence = 0;
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param dir	写入目录，不存在时创建
+	 * @param options	滚动写入参数
+	 */
+	RollingHDFSWriter(FileSystem fs, Path dir, RollingOptions options) throws IOException{
+		
+		this.fs = fs;
+		this.dir = dir;
+		this.options = options;
+		this.buffer = new Semaphore(options.getBufferSize());
+		fs.mkdirs(dir);
+		this.worker = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				drain();
+			}
+		}, "hdfs-rolling-writer-" + dir.getName());
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+	
+	/**
+	 * 写入一条数据，一条数据不会跨文件
+	 * @param data	数据，写入后不可再修改
+	 */
+	public void write(byte[] data) throws IOException{
+		
+		if(data.length > options.getBufferSize()){
+			throw new IllegalArgumentException("单条数据" + data.length + "字节，超过缓冲区大小" + options.getBufferSize());
+		}
+		checkOpen();
+		try{
+			while(!buffer.tryAcquire(data.length, POLL_MS, TimeUnit.MILLISECONDS)){
+				checkOpen();		//缓冲区已满，后台线程出错时不再等待
+			}
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("滚动写入被中断").initCause(e);
+		}
+		closeLock.readLock().lock();
+		try{
+			if(closed || null!=error){
+				buffer.release(data.length);		//等待缓冲区期间已关闭或出错，归还已占用的缓冲区
+				checkOpen();
+			}
+			queue.add(new Entry(data, null));
+		}finally{
+			closeLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * 写入一行文本，UTF-8编码，自动追加换行符
+	 */
+	public void writeLine(String line) throws IOException{
+		write((line + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * 等待此前写入的数据全部写入HDFS并执行hflush
+	 */
+	public void flush() throws IOException{
+		
+		CountDownLatch flushed = new CountDownLatch(1);
+		closeLock.readLock().lock();
+		try{
+			checkOpen();
+			queue.add(new Entry(null, flushed));
+		}finally{
+			closeLock.readLock().unlock();
+		}
+		try{
+			while(!flushed.await(POLL_MS, TimeUnit.MILLISECONDS)){
+				checkError();
+			}
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("滚动写入被中断").initCause(e);
+		}
+		checkError();
+	}
+	
+	/**
+	 * 写完缓冲区中的数据，提交当前文件并停止后台线程
+	 */
+	@Override
+	public void close() throws IOException{
+		
+		closeLock.writeLock().lock();
+		try{
+			if(closed){
+				return;
+			}
+			closed = true;
+			queue.add(CLOSE);		//持写锁入队，此后不会再有数据或flush请求排在关闭标记之后
+		}finally{
+			closeLock.writeLock().unlock();
+		}
+		try{
+			worker.join();
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("等待滚动写入结束被中断").initCause(e);
+		}
+		checkError();
+	}
+	
+	/**
+	 * 已提交（重命名为正式文件名）的文件数
+	 */
+	public long getCommittedFiles(){
+		return committedFiles.get();
+	}
+	
+	/**
+	 * 已写入HDFS的字节数
+	 */
+	public long getWrittenBytes(){
+		return writtenBytes.get();
+	}
+	
+	/**
+	 * 缓冲区中尚未写入HDFS的字节数
+	 */
+	public long getBufferedBytes(){
+		return options.getBufferSize() - buffer.availablePermits();
+	}
+	
+	/**
+	 * 后台线程：从缓冲区取出数据写入当前文件，按间隔执行hflush/hsync，满足条件时滚动
+	 */
+	private void drain(){
+		
+		try{
+			while(true){
+				Entry entry = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+				long now = System.currentTimeMillis();
+				if(entry==CLOSE){
+					commit();
+					return;
+				}
+				if(null!=entry && null!=entry.data){
+					append(entry.data, now);
+				}
+				if(null!=entry && null!=entry.flushed){
+					if(unflushed){
+						hflush(now);
+					}
+					entry.flushed.countDown();
+				}
+				if(null!=out){
+					maintain(now);
+				}
+			}
+		}catch(Throwable e){
+			error = (e instanceof IOException) ? (IOException) e : new IOException("滚动写入失败：" + dir, e);
+			IOUtils.closeStream(out);		//写入中的文件保留，可由HDFS租约恢复后人工处理
+			out = null;
+			discardPending();
+		}
+	}
+	
+	/**
+	 * 出错后丢弃缓冲区中的数据并归还缓冲区，唤醒等待中的flush（随后检查到异常）
+	 * 出错之后、入队线程看到异常之前仍可能有条目入队，由等待方按异常自行返回
+	 */
+	private void discardPending(){
+		
+		Entry entry;
+		while(null!=(entry = queue.poll())){
+			if(null!=entry.data){
+				buffer.release(entry.data.length);
+			}
+			if(null!=entry.flushed){
+				entry.flushed.countDown();
+			}
+		}
+	}
+	
+	private void append(byte[] data, long now) throws IOException{
+		
+		try{
+			if(null==out){
+				open(now);
+			}
+			out.write(data);
+			fileBytes += data.length;
+			writtenBytes.addAndGet(data.length);
+			unflushed = true;
+			unsynced = true;
+		}finally{
+			buffer.release(data.length);
+		}
+	}
+	
+	/**
+	 * 按大小、时间滚动，或按间隔执行hsync/hflush
+	 */
+	private void maintain(long now) throws IOException{
+		
+		if(fileBytes >= options.getMaxFileSize() || (options.getRollIntervalMs() > 0 && now - openedAt >= options.getRollIntervalMs())){
+			commit();
+		}else if(unsynced && options.getSyncIntervalMs() > 0 && now - lastSync >= options.getSyncIntervalMs()){
+			hsync(now);
+		}else if(unflushed && options.getFlushIntervalMs() > 0 && now - lastFlush >= options.getFlushIntervalMs()){
+			hflush(now);
+		}
+	}
+	
+	private void open(long now) throws IOException{
+		
+		String name = options.getPrefix() + "-" + format.format(new Date(now)) + "-" + (sequence++) + options.getSuffix();
+		target = new Path(dir, name);
+		inProgress = new Path(dir, IN_PROGRESS_PREFIX + name + IN_PROGRESS_SUFFIX);
+		long blockSize = (options.getBlockSize() > 0) ? options.getBlockSize() : fs.getDefaultBlockSize(inProgress);
+		short replication = (options.getReplication() > 0) ? options.getReplication() : fs.getDefaultReplication(inProgress);
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			out = fs.create(inProgress, false, CopyOptions.DEFAULT_BUFFER_SIZE, replication, blockSize);	//不覆盖，文件名冲突时抛出FileAlreadyExistsException
+			success = true;
+		}finally{
+			Metrics.record("hdfs.create", Metrics.pathLabel(inProgress.toString()), start, success);
+		}
+		fileBytes = 0;
+		openedAt = now;
+		lastFlush = now;
+		lastSync = now;
+	}
+	
+	private void hflush(long now) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			out.hflush();
+			success = true;
+		}finally{
+			Metrics.record("hdfs.hflush", Metrics.pathLabel(inProgress.toString()), start, success);
+		}
+		unflushed = false;
+		lastFlush = now;
+	}
+	
+	private void hsync(long now) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			out.hsync();
+			success = true;
+		}finally{
+			Metrics.record("hdfs.hsync", Metrics.pathLabel(inProgress.toString()), start, success);
+		}
+		unflushed = false;
+		unsynced = false;
+		lastFlush = now;
+		lastSync = now;
+	}
+	
+	/**
+	 * 关闭当前文件并重命名为正式文件名
+	 */
+	private void commit() throws IOException{
+		
+		if(null==out){
+			return;
+		}
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			out.close();		//关闭时等待数据管道确认所有数据
+			out = null;
+			if(!fs.rename(inProgress, target)){
+				throw new IOException("文件提交失败：" + inProgress + " -> " + target);
+			}
+			committedFiles.incrementAndGet();
+			success = true;
+		}finally{
+			Metrics.record("hdfs.roll", Metrics.pathLabel(target.toString()), start, success, 1, fileBytes);
+		}
+		unflushed = false;
+		unsynced = false;
+	}
+	
+	private void checkOpen() throws IOException{
+		
+		checkError();
+		if(closed){
+			throw new IOException("滚动写入器已关闭：" + dir);
+		}
+	}
+	
+	private void checkError() throws IOException{
+		
+		IOException e = error;
+		if(null!=e){
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.cp.hdfs;
+
+/**
+ * 滚动写入参数：滚动条件、hflush/hsync间隔、内存缓冲区大小、文件命名及HDFS文件的块大小和副本数
+ * 间隔小于等于0时不按该条件执行；各set方法返回自身，可链式调用
+ */
+public class RollingOptions {
+	
+	public static final long DEFAULT_MAX_FILE_SIZE = 128L * 1024 * 1024;
+	public static final long DEFAULT_ROLL_INTERVAL_MS = 60 * 60 * 1000;
+	public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024 * 1024;
+	
+	private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+	private long rollIntervalMs = DEFAULT_ROLL_INTERVAL_MS;
+	private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+	private long syncIntervalMs = -1;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private String prefix = "part";
+	private String suffix = "";
+	private long blockSize = -1;
+	private short replication = -1;
+	
+	/**
+	 * 单个文件达到该大小（字节）后滚动到新文件
+	 */
+	public RollingOptions setMaxFileSize(long maxFileSize){
+		this.maxFileSize = maxFileSize;
+		return this;
+	}
+	
+	/**
+	 * 文件打开超过该时间（毫秒）后滚动到新文件，限制已写数据对下游可见前的最长等待
+	 */
+	public RollingOptions setRollIntervalMs(long rollIntervalMs){
+		this.rollIntervalMs = rollIntervalMs;
+		return this;
+	}
+	
+	/**
+	 * hflush间隔（毫秒），hflush后数据对新的读取者可见，但不保证已落盘
+	 */
+	public RollingOptions setFlushIntervalMs(long flushIntervalMs){
+		this.flushIntervalMs = flushIntervalMs;
+		return this;
+	}
+	
+	/**
+	 * hsync间隔（毫秒），hsync后数据已写入各DataNode的磁盘，开销远大于hflush，默认不执行
+	 */
+	public RollingOptions setSyncIntervalMs(long syncIntervalMs){
+		this.syncIntervalMs = syncIntervalMs;
+		return this;
+	}
+	
+	/**
+	 * 内存缓冲区大小（字节），后台线程被NameNode或DataNode阻塞时由缓冲区吸收写入，写满后write阻塞
+	 */
+	public RollingOptions setBufferSize(int bufferSize){
+		this.bufferSize = bufferSize;
+		return this;
+	}
+	
+	/**
+	 * 文件名前缀，文件名为 前缀-时间-序号后缀
+	 */
+	public RollingOptions setPrefix(String prefix){
+		this.prefix = prefix;
+		return this;
+	}
+	
+	/**
+	 * 文件名后缀，如".csv"
+	 */
+	public RollingOptions setSuffix(String suffix){
+		this.suffix = suffix;
+		return this;
+	}
+	
+	/**
+	 * HDFS文件的块大小（字节）
+	 */
+	public RollingOptions setBlockSize(long blockSize){
+		this.blockSize = blockSize;
+		return this;
+	}
+	
+	/**
+	 * HDFS文件的副本数
+	 */
+	public RollingOptions setReplication(short replication){
+		this.replication = replication;
+		return this;
+	}
+	
+	public long getMaxFileSize(){
+		return maxFileSize;
+	}
+	
+	public long getRollIntervalMs(){
+		return rollIntervalMs;
+	}
+	
+	public long getFlushIntervalMs(){
+		return flushIntervalMs;
+	}
+	
+	public long getSyncIntervalMs(){
+		return syncIntervalMs;
+	}
+	
+	public int getBufferSize(){
+		return bufferSize;
+	}
+	
+	public String getPrefix(){
+		return prefix;
+	}
+	
+	public String getSuffix(){
+		return suffix;
+	}
+	
+	public long getBlockSize(){
+		return blockSize;
+	}
+	
+	public short getReplication(){
+		return replication;
+	}
+}
@@ -0,0 +1,387 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 客户端行缓存
+ * 按表名 + 物理行键缓存整行查询结果（包括行不存在的空结果），按占用字节数做LRU淘汰，超过ttl的项视为未命中
+ * 缓存按行键哈希分为若干段，每段各自加锁、各自按LRU淘汰，不同段的读写互不阻塞；容量平均分给各段
+ * 堆外模式下在创建时为每段一次性分配一块直接内存，按BLOCK_SIZE切成定长块，Result序列化后占用若干块，读取时拷出反序列化；
+ * 直接内存总量固定为maxBytes，不随缓存行数增长
+ * 写入、删除、追加在服务端确认后须调用invalidate；查询前取该行的stamp，填充时传入，期间该行发生过失效则不填充，避免缓存旧数据
+ * 失效计数按行键哈希分为STRIPES段，一行失效只影响同一段内行的并发填充，不影响其他行
+ */
+public class RowCache{
+
+	private static final int SEGMENTS = 16;		//缓存的最少分段数
+	private static final int BLOCK_SIZE = 256;		//堆外模式下块的字节数
+	private static final long MAX_SLAB_BYTES = (long) (Integer.MAX_VALUE / BLOCK_SIZE) * BLOCK_SIZE;	//单块直接内存的上限
+
+	private final long ttlMs;
+	private final boolean offHeap;
+	private final Segment[] segments;
+
+	private static final int STRIPES = 1024;		//失效计数的分段数，须为2的幂
+
+	private final AtomicLongArray rowInvalidations = new AtomicLongArray(STRIPES);	//按行分段的失效计数
+	private final AtomicLong invalidations = new AtomicLong();		//整表或全部失效的计数
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private static final class Key{
+		final TableName table;
+		final byte[] row;
+		final int hash;
+
+		Key(TableName table, byte[] row){
+			this.table = table;
+			this.row = row;
+			this.hash = 31 * table.hashCode() + Bytes.hashCode(row);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			return table.equals(other.table) && Bytes.equals(row, other.row);
+		}
+	}
+
+	private static final class Entry{
+		final Result result;		//堆内模式
+		final int[] blocks;		//堆外模式下占用的块号
+		final int length;		//堆外模式下序列化后的字节数
+		final long size;		//计入容量的字节数
+		final long expireTime;
+
+		Entry(Result result, int[] blocks, int length, long size, long expireTime){
+			this.result = result;
+			this.blocks = blocks;
+			this.length = length;
+			this.size = size;
+			this.expireTime = expireTime;
+		}
+	}
+
+	/**
+	 * 缓存的一段，所有字段只在持有本段锁时访问
+	 */
+	private final class Segment{
+		final long maxBytes;
+		final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true);	//访问顺序，最久未访问的在前
+		long usedBytes = 0;
+
+		final ByteBuffer slab;		//堆外模式下本段的直接内存
+		final int[] freeBlocks;		//空闲块号栈
+		int freeCount;
+
+		Segment(long maxBytes){
+			this.maxBytes = maxBytes;
+			if(offHeap){
+				int count = (int) (maxBytes / BLOCK_SIZE);
+				slab = ByteBuffer.allocateDirect(count * BLOCK_SIZE);
+				freeBlocks = new int[count];
+				for(int i = 0; i < count; i++){
+					freeBlocks[i] = count - 1 - i;
+				}
+				freeCount = count;
+			}else{
+				slab = null;
+				freeBlocks = null;
+			}
+		}
+
+		/**
+		 * 查询，已过期的项顺便移除；堆外模式下在锁内拷出字节，避免块被其他线程重用
+		 * @return	堆内模式返回Result，堆外模式返回byte[]，未命中返回null
+		 */
+		synchronized Object get(Key key){
+			Entry entry = entries.get(key);
+			if(null==entry){
+				return null;
+			}
+			if(System.currentTimeMillis() >= entry.expireTime){
+				remove(key);
+				return null;
+			}
+			if(!offHeap){
+				return entry.result;
+			}
+			byte[] bytes = new byte[entry.length];
+			for(int i = 0, offset = 0; offset < bytes.length; i++, offset += BLOCK_SIZE){
+				slab.position(entry.blocks[i] * BLOCK_SIZE);
+				slab.get(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+			}
+			return bytes;
+		}
+
+		/**
+		 * 填充，期间该行发生过失效时不填充
+		 */
+		synchronized void put(Key key, Result result, byte[] bytes, long size, long expireTime, long stamp){
+			if(size > maxBytes || stamp!=stamp(key)){
+				return;
+			}
+			remove(key);
+
+			//超过容量时淘汰最久未访问的项
+			Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+			while(usedBytes + size > maxBytes && it.hasNext()){
+				Entry old = it.next().getValue();
+				it.remove();
+				release(old);
+				evictions.incrementAndGet();
+			}
+
+			Entry entry;
+			if(offHeap){
+				int[] blocks = new int[(int) (size / BLOCK_SIZE)];
+				for(int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE){
+					blocks[i] = freeBlocks[--freeCount];
+					slab.position(blocks[i] * BLOCK_SIZE);
+					slab.put(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+				}
+				entry = new Entry(null, blocks, bytes.length, size, expireTime);
+			}else{
+				entry = new Entry(result, null, 0, size, expireTime);
+			}
+			entries.put(key, entry);
+			usedBytes += size;
+		}
+
+		synchronized void remove(Key key){
+			Entry old = entries.remove(key);
+			if(null!=old){
+				release(old);
+			}
+		}
+
+		synchronized void removeTable(TableName tableName){
+			Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+			while(it.hasNext()){
+				Map.Entry<Key, Entry> e = it.next();
+				if(e.getKey().table.equals(tableName)){
+					it.remove();
+					release(e.getValue());
+				}
+			}
+		}
+
+		synchronized void clear(){
+			Iterator<Entry> it = entries.values().iterator();
+			while(it.hasNext()){
+				release(it.next());
+				it.remove();
+			}
+		}
+
+		//扣减占用并归还堆外块
+		private void release(Entry entry){
+			usedBytes -= entry.size;
+			if(null!=entry.blocks){
+				for(int block : entry.blocks){
+					freeBlocks[freeCount++] = block;
+				}
+			}
+		}
+
+		synchronized long getSize(){
+			return usedBytes;
+		}
+
+		synchronized int getCount(){
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @param maxBytes	缓存占用的最大字节数，堆外模式下在创建时一次性分配
+	 * @param ttlMs	缓存项有效期（毫秒）
+	 * @param offHeap	是否存放在堆外直接内存
+	 */
+	public RowCache(long maxBytes, long ttlMs, boolean offHeap){
+		if(maxBytes <= 0){
+			throw new IllegalArgumentException("行缓存容量须大于0：" + maxBytes);
+		}
+		this.ttlMs = ttlMs;
+		this.offHeap = offHeap;
+
+		//堆外模式下每段的直接内存不能超过ByteBuffer的上限，容量很大时增加段数
+		int count = (int) Math.max(SEGMENTS, (maxBytes + MAX_SLAB_BYTES - 1) / MAX_SLAB_BYTES);
+		segments = new Segment[count];
+		for(int i = 0; i < count; i++){
+			segments[i] = new Segment(maxBytes / count);
+		}
+	}
+
+	/**
+	 * 指定行当前的失效计数，查询前取得，填充时传给put
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 */
+	public long stamp(TableName tableName, byte[] row){
+		return stamp(new Key(tableName, row));
+	}
+
+	//两个计数都只增不减，任一增加时和也增加
+	private long stamp(Key key){
+		return invalidations.get() + rowInvalidations.get(stripe(key));
+	}
+
+	private static int stripe(Key key){
+		int h = key.hash;
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private Segment segment(Key key){
+		int h = key.hash;
+		return segments[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % segments.length];
+	}
+
+	/**
+	 * 查询缓存，未命中或已过期时返回null
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 */
+	public Result get(TableName tableName, byte[] row) throws IOException{
+
+		Key key = new Key(tableName, row);
+		Object value = segment(key).get(key);
+		if(null==value){
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		if(!offHeap){
+			return (Result) value;
+		}
+		return ProtobufUtil.toResult(ClientProtos.Result.parseFrom((byte[]) value));
+	}
+
+	/**
+	 * 填充缓存
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 * @param result	整行查询结果
+	 * @param stamp	查询前取得的该行失效计数，期间该行发生过失效时不填充
+	 */
+	public void put(TableName tableName, byte[] row, Result result, long stamp){
+
+		Key key = new Key(tableName, row);
+		long expireTime = System.currentTimeMillis() + ttlMs;
+		if(offHeap){
+			//序列化在锁外进行，按块数计入容量
+			byte[] bytes = ProtobufUtil.toResult(result).toByteArray();
+			long size = (long) (bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+			segment(key).put(key, null, bytes, Math.max(size, BLOCK_SIZE), expireTime, stamp);
+		}else{
+			segment(key).put(key, result, null, heapSize(result), expireTime, stamp);
+		}
+	}
+
+	/**
+	 * 使指定行的缓存失效
+	 * @param tableName	表名
+	 * @param row	物理行键
+	 */
+	public void invalidate(TableName tableName, byte[] row){
+		Key key = new Key(tableName, row);
+		Segment segment = segment(key);
+		synchronized(segment){
+			rowInvalidations.incrementAndGet(stripe(key));
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * 使指定表的缓存全部失效
+	 * @param tableName	表名
+	 */
+	public void invalidate(TableName tableName){
+
+		//先增加计数，之后开始的填充都不会成功，再逐段移除
+		invalidations.incrementAndGet();
+		for(Segment segment : segments){
+			segment.removeTable(tableName);
+		}
+	}
+
+	public void clear(){
+		invalidations.incrementAndGet();
+		for(Segment segment : segments){
+			segment.clear();
+		}
+	}
+
+	private static long heapSize(Result result){
+		long size = 64;
+		Cell[] cells = result.rawCells();
+		if(null!=cells){
+			for(Cell cell : cells){
+				size += CellUtil.estimatedHeapSizeOf(cell);
+			}
+		}
+		return size;
+	}
+
+	public long getHitCount(){
+		return hits.get();
+	}
+
+	public long getMissCount(){
+		return misses.get();
+	}
+
+	public long getEvictionCount(){
+		return evictions.get();
+	}
+
+	public double getHitRatio(){
+		long h = hits.get();
+		long total = h + misses.get();
+		return (0==total) ? 0 : (double) h / total;
+	}
+
+	public long getSize(){
+		long size = 0;
+		for(Segment segment : segments){
+			size += segment.getSize();
+		}
+		return size;
+	}
+
+	public int getCount(){
+		int count = 0;
+		for(Segment segment : segments){
+			count += segment.getCount();
+		}
+		return count;
+	}
+
+	@Override
+	public String toString(){
+		return "行缓存：" + getCount() + "行，" + getSize() + "字节，命中" + getHitCount() + "次，未命中" + getMissCount() + "次，淘汰" + getEvictionCount() + "次";
+	}
+}
@@ -0,0 +1,67 @@
+package com.cp.hbase;
+
+import org.apache.hadoop.hbase.HConstants;
+
+/**
+ * 行键编解码器
+ * 将调用方使用的逻辑行键编码为实际存储的物理行键（分桶前缀 + 逻辑行键），用于打散单调递增的行键
+ * 写入、查询、删除时对行键编码，扫描时对每个分桶分别扫描后按逻辑行键归并
+ */
+public interface RowKeyCodec{
+
+	/**
+	 * 不做任何编码的编解码器
+	 */
+	RowKeyCodec IDENTITY = new RowKeyCodec(){
+		@Override
+		public byte[] encode(byte[] rowKey){
+			return rowKey;
+		}
+
+		@Override
+		public byte[] decode(byte[] row){
+			return row;
+		}
+
+		@Override
+		public int getPrefixLength(){
+			return 0;
+		}
+
+		@Override
+		public byte[][] getBucketPrefixes(){
+			return new byte[][]{HConstants.EMPTY_BYTE_ARRAY};
+		}
+
+		@Override
+		public byte[] getBucketPrefix(byte[] logicalPrefix){
+			return HConstants.EMPTY_BYTE_ARRAY;
+		}
+	};
+
+	/**
+	 * 逻辑行键 -> 物理行键
+	 */
+	byte[] encode(byte[] rowKey);
+
+	/**
+	 * 物理行键 -> 逻辑行键
+	 */
+	byte[] decode(byte[] row);
+
+	/**
+	 * 分桶前缀的字节数
+	 */
+	int getPrefixLength();
+
+	/**
+	 * 所有分桶的物理前缀，按字节序排列
+	 */
+	byte[][] getBucketPrefixes();
+
+	/**
+	 * 以logicalPrefix开头的行键都落在同一分桶时返回该分桶的前缀，否则返回null
+	 * @param logicalPrefix	逻辑行键前缀
+	 */
+	byte[] getBucketPrefix(byte[] logicalPrefix);
+}
@@ -0,0 +1,52 @@
+package com.cp.hbase;
+
+/**
+ * 时序数据行键工具
+ * 行键格式：电表号#反转时间戳，反转时间戳为Long.MAX_VALUE减去时间戳，按19位补零，
+ * 同一电表的数据按时间倒序排列，最新读数在最前，扫描“电表号#”前缀即可取得最近的读数
+ * 配合new SaltedRowKeyCodec(n, '#')使用时同一电表的数据落在同一分桶内
+ */
+public final class RowKeys{
+
+	public static final char DELIMITER = '#';
+
+	private RowKeys(){
+	}
+
+	/**
+	 * 反转时间戳，越新的时间戳值越小
+	 */
+	public static long reverseTimestamp(long timestamp){
+		return Long.MAX_VALUE - timestamp;
+	}
+
+	/**
+	 * 生成“电表号#反转时间戳”行键
+	 * @param meterId	电表号，不能包含分隔符
+	 * @param timestamp	读数时间戳（毫秒）
+	 */
+	public static String meterKey(String meterId, long timestamp){
+		return meterId + DELIMITER + String.format("%019d", reverseTimestamp(timestamp));
+	}
+
+	/**
+	 * 某电表在[startTime, endTime)内读数的起始行键（包含），用于扫描
+	 */
+	public static String meterStartRow(String meterId, long endTime){
+		return meterKey(meterId, endTime - 1);
+	}
+
+	/**
+	 * 某电表在[startTime, endTime)内读数的结束行键（不包含），用于扫描
+	 */
+	public static String meterStopRow(String meterId, long startTime){
+		return meterKey(meterId, startTime - 1);
+	}
+
+	/**
+	 * 从行键中解析时间戳
+	 */
+	public static long timestampOf(String rowKey){
+		return reverseTimestamp(Long.parseLong(rowKey.substring(rowKey.lastIndexOf(DELIMITER) + 1)));
+	}
+}
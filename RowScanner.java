@@ -0,0 +1,161 @@
+package com.cp.hbase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 流式扫描器，按需逐批向RegionServer拉取结果
+ * 行键加盐分桶时每个分桶一个ResultScanner，按去掉分桶前缀后的逻辑行键归并，结果整体有序
+ * 达到limit或close后停止，close时归还表操作句柄；非线程安全
+ */
+public class RowScanner implements Iterator<Result>, Iterable<Result>, Closeable{
+
+	private final Table table;
+	private final ResultScanner[] scanners;
+	private final long limit;
+
+	private final PriorityQueue<Head> heads;	//多个分桶时各扫描器的当前行
+	private boolean started = false;
+	private long count = 0;
+	private Result next = null;
+	private boolean closed = false;
+
+	private static final class Head{
+		final Result result;
+		final int scanner;
+
+		Head(Result result, int scanner){
+			this.result = result;
+			this.scanner = scanner;
+		}
+	}
+
+	/**
+	 * @param table	表操作句柄，close时归还
+	 * @param scanners	各分桶的扫描器
+	 * @param prefixLength	分桶前缀的字节数，归并时忽略
+	 * @param limit	最多返回的行数，小于等于0时不限
+	 */
+	RowScanner(Table table, ResultScanner[] scanners, final int prefixLength, long limit){
+
+		this.table = table;
+		this.scanners = scanners;
+		this.limit = limit;
+		if(scanners.length > 1){
+			this.heads = new PriorityQueue<Head>(scanners.length, new Comparator<Head>(){
+				@Override
+				public int compare(Head a, Head b){
+					byte[] ra = a.result.getRow();
+					byte[] rb = b.result.getRow();
+					return Bytes.compareTo(ra, prefixLength, ra.length - prefixLength, rb, prefixLength, rb.length - prefixLength);
+				}
+			});
+		}else{
+			this.heads = null;
+		}
+	}
+
+	/**
+	 * 取下一行，没有更多结果时返回null
+	 */
+	public Result nextResult() throws IOException{
+
+		if(null!=next){
+			Result result = next;
+			next = null;
+			return result;
+		}
+		if(closed || (limit > 0 && count >= limit)){
+			return null;
+		}
+		Result result = (null==heads) ? scanners[0].next() : merge();
+		if(null==result){
+			close();
+			return null;
+		}
+		count++;
+		return result;
+	}
+
+	private Result merge() throws IOException{
+
+		if(!started){		//首次调用时取各分桶的第一行
+			started = true;
+			for(int i = 0; i < scanners.length; i++){
+				Result result = scanners[i].next();
+				if(null!=result){
+					heads.add(new Head(result, i));
+				}
+			}
+		}
+		Head head = heads.poll();
+		if(null==head){
+			return null;
+		}
+		Result result = scanners[head.scanner].next();
+		if(null!=result){
+			heads.add(new Head(result, head.scanner));
+		}
+		return head.result;
+	}
+
+	@Override
+	public boolean hasNext(){
+		if(null==next){
+			try{
+				next = nextResult();
+			}catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+		return null!=next;
+	}
+
+	@Override
+	public Result next(){
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		Result result = next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public Iterator<Result> iterator(){
+		return this;
+	}
+
+	/**
+	 * 已返回的行数
+	 */
+	public long getCount(){
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException{
+
+		if(closed){
+			return;
+		}
+		closed = true;
+		try{
+			for(ResultScanner scanner : scanners){
+				scanner.close();
+			}
+		}finally{
+			HBaseDao.releaseTable(table);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.cp.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.MurmurHash3;
+
+/**
+ * 加盐行键编解码器
+ * 物理行键 = 1字节分桶号 + 逻辑行键，分桶号由逻辑行键的哈希值对分桶数取模得到
+ * 指定分隔符时只对分隔符之前的部分（如电表号）取哈希，同一电表的数据落在同一分桶内且保持有序，
+ * 按电表号前缀扫描时只需扫描一个分桶
+ */
+public class SaltedRowKeyCodec implements RowKeyCodec{
+
+	private static final int SEED = 0x5A17;
+
+	private final int buckets;
+	private final int delimiter;		//小于0表示对整个行键取哈希
+	private final byte[][] prefixes;
+
+	/**
+	 * 对整个行键取哈希分桶
+	 * @param buckets	分桶数，1~256
+	 */
+	public SaltedRowKeyCodec(int buckets){
+		this(buckets, -1);
+	}
+
+	/**
+	 * 对分隔符之前的部分取哈希分桶
+	 * @param buckets	分桶数，1~256
+	 * @param delimiter	分隔符，如'#'
+	 */
+	public SaltedRowKeyCodec(int buckets, char delimiter){
+		this(buckets, (int) delimiter);
+	}
+
+	private SaltedRowKeyCodec(int buckets, int delimiter){
+
+		if(buckets < 1 || buckets > 256){
+			throw new IllegalArgumentException("分桶数须在1~256之间：" + buckets);
+		}
+		this.buckets = buckets;
+		this.delimiter = delimiter;
+		this.prefixes = new byte[buckets][];
+		for(int i = 0; i < buckets; i++){
+			prefixes[i] = new byte[]{(byte) i};
+		}
+	}
+
+	@Override
+	public byte[] encode(byte[] rowKey){
+
+		byte[] row = new byte[rowKey.length + 1];
+		row[0] = (byte) bucketOf(rowKey, hashLength(rowKey));
+		System.arraycopy(rowKey, 0, row, 1, rowKey.length);
+		return row;
+	}
+
+	@Override
+	public byte[] decode(byte[] row){
+		return Bytes.copy(row, 1, row.length - 1);
+	}
+
+	@Override
+	public int getPrefixLength(){
+		return 1;
+	}
+
+	@Override
+	public byte[][] getBucketPrefixes(){
+		return prefixes;
+	}
+
+	@Override
+	public byte[] getBucketPrefix(byte[] logicalPrefix){
+
+		if(buckets==1){
+			return prefixes[0];
+		}
+		if(delimiter < 0){
+			return null;	//整个行键参与哈希，前缀无法确定分桶
+		}
+		int length = hashLength(logicalPrefix);
+		if(length==logicalPrefix.length){
+			return null;	//前缀中不含分隔符
+		}
+		return prefixes[bucketOf(logicalPrefix, length)];
+	}
+
+	/**
+	 * 分桶数，建表时可按getBucketPrefixes()预分区
+	 */
+	public int getBuckets(){
+		return buckets;
+	}
+
+	private int bucketOf(byte[] rowKey, int length){
+		int hash = MurmurHash3.getInstance().hash(rowKey, 0, length, SEED);
+		return (hash & Integer.MAX_VALUE) % buckets;
+	}
+
+	private int hashLength(byte[] rowKey){
+
+		if(delimiter >= 0){
+			for(int i = 0; i < rowKey.length; i++){
+				if(rowKey[i]==(byte) delimiter){
+					return i;
+				}
+			}
+		}
+		return rowKey.length;
+	}
+}
@@ -0,0 +1,201 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 扫描参数，描述扫描范围、投影列、过滤条件及扫描器调优参数
+ * 各set/add方法返回自身，可链式调用
+ */
+public class ScanOptions{
+
+	private byte[] startRow = null;
+	private byte[] stopRow = null;
+	private byte[] rowPrefix = null;
+	private long minTime = 0;
+	private long maxTime = Long.MAX_VALUE;
+	private final List<byte[][]> columns = new ArrayList<byte[][]>();	//{列族, 列名}，列名为null时表示整个列族
+	private final List<Filter> filters = new ArrayList<Filter>();
+	private int caching = 1000;
+	private int batch = -1;
+	private long maxResultSize = -1;
+	private long limit = -1;
+	private boolean cacheBlocks = false;	//大范围扫描默认不污染RegionServer的BlockCache
+
+	/**
+	 * 起始行键（包含）
+	 */
+	public ScanOptions setStartRow(String startRow){
+		return setStartRow(Bytes.toBytes(startRow));
+	}
+
+	public ScanOptions setStartRow(byte[] startRow){
+		this.startRow = startRow;
+		return this;
+	}
+
+	/**
+	 * 结束行键（不包含）
+	 */
+	public ScanOptions setStopRow(String stopRow){
+		return setStopRow(Bytes.toBytes(stopRow));
+	}
+
+	public ScanOptions setStopRow(byte[] stopRow){
+		this.stopRow = stopRow;
+		return this;
+	}
+
+	/**
+	 * 行键前缀，设置后忽略起始、结束行键
+	 */
+	public ScanOptions setRowPrefix(String rowPrefix){
+		return setRowPrefix(Bytes.toBytes(rowPrefix));
+	}
+
+	public ScanOptions setRowPrefix(byte[] rowPrefix){
+		this.rowPrefix = rowPrefix;
+		return this;
+	}
+
+	/**
+	 * 时间戳范围[minTime, maxTime)
+	 */
+	public ScanOptions setTimeRange(long minTime, long maxTime){
+		this.minTime = minTime;
+		this.maxTime = maxTime;
+		return this;
+	}
+
+	/**
+	 * 只返回指定列族
+	 */
+	public ScanOptions addFamily(String columnFamily){
+		columns.add(new byte[][]{Bytes.toBytes(columnFamily), null});
+		return this;
+	}
+
+	/**
+	 * 只返回指定列
+	 */
+	public ScanOptions addColumn(String columnFamily, String column){
+		columns.add(new byte[][]{Bytes.toBytes(columnFamily), Bytes.toBytes(column)});
+		return this;
+	}
+
+	/**
+	 * 增加过滤器，多个过滤器须同时满足
+	 */
+	public ScanOptions addFilter(Filter filter){
+		filters.add(filter);
+		return this;
+	}
+
+	/**
+	 * 每次RPC从RegionServer取回的行数
+	 */
+	public ScanOptions setCaching(int caching){
+		this.caching = caching;
+		return this;
+	}
+
+	/**
+	 * 每个Result最多包含的cell数，用于宽行分批返回
+	 */
+	public ScanOptions setBatch(int batch){
+		this.batch = batch;
+		return this;
+	}
+
+	/**
+	 * 每次RPC返回的最大字节数
+	 */
+	public ScanOptions setMaxResultSize(long maxResultSize){
+		this.maxResultSize = maxResultSize;
+		return this;
+	}
+
+	/**
+	 * 最多返回的行数；服务端以PageFilter在每个Region内截断，客户端再做总数截断
+	 */
+	public ScanOptions setLimit(long limit){
+		this.limit = limit;
+		return this;
+	}
+
+	public ScanOptions setCacheBlocks(boolean cacheBlocks){
+		this.cacheBlocks = cacheBlocks;
+		return this;
+	}
+
+	public long getLimit(){
+		return limit;
+	}
+
+	public byte[] getStartRow(){
+		return startRow;
+	}
+
+	public byte[] getStopRow(){
+		return stopRow;
+	}
+
+	public byte[] getRowPrefix(){
+		return rowPrefix;
+	}
+
+	/**
+	 * 生成对应的Scan对象
+	 */
+	public Scan toScan() throws IOException{
+
+		Scan scan = new Scan();
+		if(null!=rowPrefix){
+			scan.setRowPrefixFilter(rowPrefix);
+		}else{
+			if(null!=startRow){
+				scan.withStartRow(startRow);
+			}
+			if(null!=stopRow){
+				scan.withStopRow(stopRow);
+			}
+		}
+		if(minTime > 0 || maxTime < Long.MAX_VALUE){
+			scan.setTimeRange(minTime, maxTime);
+		}
+		for(byte[][] column : columns){
+			if(null==column[1]){
+				scan.addFamily(column[0]);
+			}else{
+				scan.addColumn(column[0], column[1]);
+			}
+		}
+
+		List<Filter> all = new ArrayList<Filter>(filters);
+		if(limit > 0){
+			all.add(new PageFilter(limit));
+		}
+		if(all.size()==1){
+			scan.setFilter(all.get(0));
+		}else if(all.size() > 1){
+			scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, all));
+		}
+
+		scan.setCaching(caching);
+		if(batch > 0){
+			scan.setBatch(batch);
+		}
+		if(maxResultSize > 0){
+			scan.setMaxResultSize(maxResultSize);
+		}
+		scan.setCacheBlocks(cacheBlocks);
+		return scan;
+	}
+}
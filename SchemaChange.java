@@ -0,0 +1,124 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+/**
+ * 在线结构变更的进度
+ * 增加、修改、删除列族的请求提交给HMaster后立即返回，各Region在后台逐个重新打开以应用新的列族描述，期间表保持可读写
+ * 通过getAlterStatus查询尚未重新打开的Region数，调用方可轮询isDone或调用await等待完成
+ * HMaster尚未开始处理变更时getAlterStatus也返回0，因此先确认表描述已包含本次变更，再以getAlterStatus的结果为准
+ */
+public class SchemaChange{
+
+	private static final long POLL_MS = 1000;
+
+	private final Admin admin;
+	private final TableName tableName;
+	private final String description;
+	private final HColumnDescriptor[] expectedFamilies;
+	private final byte[] removedFamily;
+	private volatile boolean applied = false;		//表描述是否已包含本次变更
+	private volatile int pendingRegions = -1;
+	private volatile int totalRegions = -1;
+
+	/**
+	 * @param admin	数据库管理员操作对象
+	 * @param tableName	表名
+	 * @param description	变更内容，用于输出进度
+	 * @param expectedFamilies	变更后表描述中应有的列族描述，增加、修改列族时使用
+	 * @param removedFamily	变更后表描述中应没有的列族，删除列族时使用
+	 */
+	SchemaChange(Admin admin, TableName tableName, String description, HColumnDescriptor[] expectedFamilies, String removedFamily){
+		this.admin = admin;
+		this.tableName = tableName;
+		this.description = description;
+		this.expectedFamilies = (null==expectedFamilies) ? new HColumnDescriptor[0] : expectedFamilies;
+		this.removedFamily = (null==removedFamily) ? null : Bytes.toBytes(removedFamily);
+	}
+
+	/**
+	 * 查询一次进度，返回是否所有Region都已应用变更
+	 */
+	public boolean isDone() throws IOException{
+
+		if(!applied){
+			applied = isApplied(admin.getTableDescriptor(tableName));
+			if(!applied){
+				return false;		//HMaster尚未更新表描述，此时的getAlterStatus不可信
+			}
+		}
+		Pair<Integer, Integer> status = admin.getAlterStatus(tableName);
+		pendingRegions = status.getFirst();
+		totalRegions = status.getSecond();
+		return 0==pendingRegions;
+	}
+
+	/**
+	 * 表描述是否已包含本次变更
+	 */
+	private boolean isApplied(HTableDescriptor desc){
+
+		for(HColumnDescriptor expected : expectedFamilies){
+			if(!expected.equals(desc.getFamily(expected.getName()))){
+				return false;
+			}
+		}
+		return null==removedFamily || !desc.hasFamily(removedFamily);
+	}
+
+	/**
+	 * 轮询直到变更完成或超时
+	 * @param timeoutMs	超时时间（毫秒），小于等于0时一直等待
+	 * @return	是否已完成
+	 */
+	public boolean await(long timeoutMs) throws IOException{
+
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while(!isDone()){
+			if(timeoutMs > 0 && System.currentTimeMillis() >= deadline){
+				return false;
+			}
+			try{
+				Thread.sleep(POLL_MS);
+			}catch(InterruptedException e){
+				throw (InterruptedIOException) new InterruptedIOException("等待结构变更被中断").initCause(e);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 最近一次查询时尚未应用变更的Region数，尚未查询或表描述尚未更新时为-1
+	 */
+	public int getPendingRegions(){
+		return pendingRegions;
+	}
+
+	/**
+	 * 最近一次查询时的Region总数，尚未查询时为-1
+	 */
+	public int getTotalRegions(){
+		return totalRegions;
+	}
+
+	/**
+	 * 最近一次查询时已应用变更的Region比例
+	 */
+	public double getProgress(){
+		int total = totalRegions;
+		return (total <= 0) ? 0 : (double) (total - pendingRegions) / total;
+	}
+
+	@Override
+	public String toString(){
+		return "表" + tableName + description + "：已更新" + (totalRegions - pendingRegions) + "/" + totalRegions + "个Region";
+	}
+}
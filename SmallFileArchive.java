@@ -0,0 +1,85 @@
+package com.cp.hdfs;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+
+/**
+ * 小文件归档的随机读取
+ * 打开时把索引文件整体加载到内存，读取单个原文件时按偏移直接定位到对应记录，只读取这一条记录
+ * 线程安全，并发读取在同一个SequenceFile.Reader上串行执行
+ */
+public class SmallFileArchive implements Closeable {
+	
+	private final Path archive;
+	private final Map<String, Long> offsets = new HashMap<String, Long>();		//原文件相对路径 -> 记录偏移
+	private final SequenceFile.Reader reader;
+	private final Text key = new Text();
+	private final BytesWritable value = new BytesWritable();
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param archive	归档文件路径
+	 */
+	SmallFileArchive(FileSystem fs, Path archive) throws IOException{
+		
+		this.archive = archive;
+		Configuration conf = fs.getConf();
+		SequenceFile.Reader index = new SequenceFile.Reader(conf, SequenceFile.Reader.file(new Path(archive.toString() + SmallFileCompactor.INDEX_SUFFIX)));
+		try{
+			Text name = new Text();
+			LongWritable offset = new LongWritable();
+			while(index.next(name, offset)){
+				offsets.put(name.toString(), offset.get());
+			}
+		}finally{
+			index.close();
+		}
+		this.reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(archive));
+	}
+	
+	/**
+	 * 读取一个原文件的内容
+	 * @param name	原文件相对于合并目录的路径
+	 */
+	public synchronized byte[] read(String name) throws IOException{
+		
+		Long offset = offsets.get(name);
+		if(null==offset){
+			throw new FileNotFoundException("归档" + archive + "中不存在文件：" + name);
+		}
+		reader.seek(offset);
+		if(!reader.next(key, value) || !name.equals(key.toString())){
+			throw new IOException("归档" + archive + "索引与数据不一致：" + name);
+		}
+		return value.copyBytes();
+	}
+	
+	public boolean contains(String name){
+		return offsets.containsKey(name);
+	}
+	
+	/**
+	 * 归档中的全部原文件相对路径
+	 */
+	public Set<String> getNames(){
+		return Collections.unmodifiableSet(offsets.keySet());
+	}
+	
+	@Override
+	public void close() throws IOException{
+		reader.close();
+	}
+}
@@ -0,0 +1,217 @@
+package com.cp.hdfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+
+/**
+ * 小文件合并
+ * 遍历目录下不超过maxFileSize的文件，按 相对路径 -> 文件内容 依次写入一个SequenceFile，
+ * 同时生成索引文件（归档文件名 + ".idx"，相对路径 -> 记录偏移），读取时由SmallFileArchive加载索引后直接定位
+ * 归档和索引先写入临时文件，重新读取归档逐条比较CRC32校验通过后才重命名为正式文件，需要时再删除原文件
+ * 记录不压缩，保证索引中的偏移可直接定位
+ */
+class SmallFileCompactor {
+	
+	static final String INDEX_SUFFIX = ".idx";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final int WALK_PARALLELISM = 8;
+	
+	private final FileSystem fs;
+	private final Path dir;
+	private final Path archive;
+	private final long maxFileSize;
+	private final boolean deleteOriginals;
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param dir	待合并的目录
+	 * @param archive	归档文件路径
+	 * @param maxFileSize	参与合并的文件大小上限，超过的文件跳过
+	 * @param deleteOriginals	校验通过后是否删除原文件
+	 */
+	SmallFileCompactor(FileSystem fs, Path dir, Path archive, long maxFileSize, boolean deleteOriginals){
+		this.fs = fs;
+		this.dir = dir;
+		this.archive = archive;
+		this.maxFileSize = maxFileSize;
+		this.deleteOriginals = deleteOriginals;
+	}
+	
+	/**
+	 * 执行合并
+	 * @return	合并结果，读取失败的文件记为失败，不写入归档也不删除
+	 */
+	TransferReport compact() throws IOException{
+		
+		final Path index = new Path(archive.toString() + INDEX_SUFFIX);
+		if(fs.exists(archive) || fs.exists(index)){
+			throw new FileAlreadyExistsException("归档文件已存在：" + archive);
+		}
+		final Path tmpArchive = new Path(archive.toString() + TMP_SUFFIX);
+		final Path tmpIndex = new Path(index.toString() + TMP_SUFFIX);
+		final Set<String> ownFiles = new HashSet<String>();		//归档、索引及其临时文件，按完整路径精确排除
+		for(Path own : new Path[]{archive, index, tmpArchive, tmpIndex}){
+			ownFiles.add(fs.makeQualified(own).toUri().getPath());
+		}
+		final Path root = fs.getFileStatus(dir).getPath();
+		
+		final TransferReport report = new TransferReport();
+		final Map<String, Long> offsets = new LinkedHashMap<String, Long>();		//相对路径 -> 记录偏移
+		final Map<String, Long> checksums = new HashMap<String, Long>();			//相对路径 -> 写入时的CRC32
+		final List<Path> originals = new ArrayList<Path>();
+		final Configuration conf = fs.getConf();
+		
+		final SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.file(tmpArchive),
+				SequenceFile.Writer.keyClass(Text.class),
+				SequenceFile.Writer.valueClass(BytesWritable.class),
+				SequenceFile.Writer.compression(CompressionType.NONE));
+		boolean indexCreated = false;		//临时索引是否由本次创建
+		boolean archiveRenamed = false;		//正式归档是否由本次重命名得到
+		boolean committed = false;
+		try{
+			try{
+				new TreeWalker(fs, WALK_PARALLELISM).walk(dir.toString(), new FileStatusHandler(){
+					@Override
+					public boolean onStatus(FileStatus status) throws IOException{
+						String path = status.getPath().toUri().getPath();
+						if(status.getLen() > maxFileSize || ownFiles.contains(path)){
+							report.skip();		//大文件及归档自身不参与合并
+							return true;
+						}
+						String name = TreeWalker.relativePath(root, status.getPath());
+						byte[] data;
+						try{
+							data = readFully(status);
+						}catch(IOException e){
+							report.failure(path, e);
+							return true;
+						}
+						CRC32 crc = new CRC32();
+						crc.update(data, 0, data.length);
+						offsets.put(name, writer.getLength());
+						checksums.put(name, crc.getValue());
+						writer.append(new Text(name), new BytesWritable(data));
+						originals.add(status.getPath());
+						report.success(data.length);
+						return true;
+					}
+				});
+			}finally{
+				writer.close();
+			}
+			
+			indexCreated = true;
+			writeIndex(conf, tmpIndex, offsets);
+			verify(conf, tmpArchive, checksums);
+			if(!fs.rename(tmpArchive, archive)){
+				throw new IOException("归档文件重命名失败：" + archive);
+			}
+			archiveRenamed = true;
+			if(!fs.rename(tmpIndex, index)){
+				throw new IOException("索引文件重命名失败：" + index);
+			}
+			committed = true;
+		}finally{
+			//只删除本次创建的文件，不删除其他进程在此期间创建的同名文件
+			if(!committed){
+				fs.delete(archiveRenamed ? archive : tmpArchive, false);
+				if(indexCreated){
+					fs.delete(tmpIndex, false);
+				}
+			}
+		}
+		
+		if(deleteOriginals){
+			for(Path original : originals){
+				try{
+					if(!fs.delete(original, false)){
+						report.failure(original.toUri().getPath(), new IOException("原文件删除失败"));
+					}
+				}catch(IOException e){
+					report.failure(original.toUri().getPath(), e);
+				}
+			}
+		}
+		report.finish();
+		return report;
+	}
+	
+	private byte[] readFully(FileStatus status) throws IOException{
+		
+		byte[] data = new byte[(int) status.getLen()];
+		FSDataInputStream in = fs.open(status.getPath());
+		try{
+			in.readFully(0, data);
+		}finally{
+			in.close();
+		}
+		return data;
+	}
+	
+	private void writeIndex(Configuration conf, Path index, Map<String, Long> offsets) throws IOException{
+		
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.file(index),
+				SequenceFile.Writer.keyClass(Text.class),
+				SequenceFile.Writer.valueClass(LongWritable.class),
+				SequenceFile.Writer.compression(CompressionType.BLOCK));
+		try{
+			Text key = new Text();
+			LongWritable value = new LongWritable();
+			for(Map.Entry<String, Long> entry : offsets.entrySet()){
+				key.set(entry.getKey());
+				value.set(entry.getValue());
+				writer.append(key, value);
+			}
+		}finally{
+			writer.close();
+		}
+	}
+	
+	/**
+	 * 重新读取归档，逐条比较CRC32，记录数及内容都与写入时一致才算通过
+	 */
+	private void verify(Configuration conf, Path tmpArchive, Map<String, Long> checksums) throws IOException{
+		
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(tmpArchive));
+		try{
+			Text key = new Text();
+			BytesWritable value = new BytesWritable();
+			int records = 0;
+			while(reader.next(key, value)){
+				CRC32 crc = new CRC32();
+				crc.update(value.getBytes(), 0, value.getLength());
+				Long expected = checksums.get(key.toString());
+				if(null==expected || expected != crc.getValue()){
+					throw new IOException("归档校验失败：" + key);
+				}
+				records++;
+			}
+			if(records != checksums.size()){
+				throw new IOException("归档校验失败：写入" + checksums.size() + "条，读回" + records + "条");
+			}
+		}finally{
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.cp.hbase;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 预分区切分点生成
+ * 建表时按切分点预先创建多个Region，写入从一开始就分散到多个RegionServer
+ */
+public final class SplitKeys{
+
+	private SplitKeys(){
+	}
+
+	/**
+	 * 按行键首4个字节均匀切分，适用于行键首字节分布均匀（如哈希值）的表
+	 * @param regions	Region数
+	 */
+	public static byte[][] uniform(int regions){
+
+		byte[][] splits = new byte[regions - 1][];
+		long range = 1L << 32;
+		for(int i = 1; i < regions; i++){
+			splits[i - 1] = Bytes.toBytes((int) (range * i / regions));
+		}
+		return splits;
+	}
+
+	/**
+	 * 按十六进制字符串均匀切分，适用于以MD5等十六进制串开头的行键
+	 * @param regions	Region数
+	 */
+	public static byte[][] hex(int regions){
+
+		byte[][] splits = new byte[regions - 1][];
+		long range = 1L << 32;
+		for(int i = 1; i < regions; i++){
+			splits[i - 1] = Bytes.toBytes(String.format("%08x", range * i / regions));
+		}
+		return splits;
+	}
+
+	/**
+	 * 按行键编解码器的分桶切分，每个分桶一个Region
+	 * @param codec	行键编解码器
+	 */
+	public static byte[][] buckets(RowKeyCodec codec){
+		byte[][] prefixes = codec.getBucketPrefixes();
+		return Arrays.copyOfRange(prefixes, 1, prefixes.length);	//第一个分桶从空行键开始，不需要切分点
+	}
+}
@@ -0,0 +1,124 @@
+package com.cp.hbase;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.regionserver.NoSuchColumnFamilyException;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 表元数据缓存
+ * 缓存表及其列族是否存在，避免每次数据操作前都向HMaster发起tableExists请求
+ * 缓存项超过ttl后失效重新加载；只缓存存在的表，不存在的表每次都向HMaster确认
+ * 建表、删表、增删列族后须调用invalidate使缓存失效
+ */
+class TableMetaCache{
+
+	private final Admin admin;
+	private volatile long ttlMs;
+	private final ConcurrentMap<TableName, Entry> entries = new ConcurrentHashMap<TableName, Entry>();
+
+	private static final class Entry{
+		final Set<String> families;
+		final long expireTime;
+
+		Entry(Set<String> families, long expireTime){
+			this.families = families;
+			this.expireTime = expireTime;
+		}
+	}
+
+	/**
+	 * @param admin	数据库管理员操作对象
+	 * @param ttlMs	缓存有效期（毫秒），小于等于0时不缓存
+	 */
+	TableMetaCache(Admin admin, long ttlMs){
+		this.admin = admin;
+		this.ttlMs = ttlMs;
+	}
+
+	void setTtl(long ttlMs){
+		this.ttlMs = ttlMs;
+		entries.clear();
+	}
+
+	long getTtl(){
+		return ttlMs;
+	}
+
+	/**
+	 * 判断表是否存在
+	 * @param tableName	表名
+	 * @throws org.apache.hadoop.hbase.TableNotFoundException	表不存在
+	 */
+	void checkTable(TableName tableName) throws IOException{
+		get(tableName, false);
+	}
+
+	/**
+	 * 判断表及列族是否存在，缓存中没有该列族时重新加载一次再判断
+	 * @param tableName	表名
+	 * @param columnFamily	列族
+	 * @throws org.apache.hadoop.hbase.TableNotFoundException	表不存在
+	 * @throws NoSuchColumnFamilyException	列族不存在
+	 */
+	void checkFamily(TableName tableName, String columnFamily) throws IOException{
+
+		if(get(tableName, false).families.contains(columnFamily)){
+			return;
+		}
+		if(!get(tableName, true).families.contains(columnFamily)){
+			throw new NoSuchColumnFamilyException("表" + tableName + "中不存在列族" + columnFamily);
+		}
+	}
+
+	/**
+	 * 使指定表的缓存失效
+	 * @param tableName	表名
+	 */
+	void invalidate(TableName tableName){
+		entries.remove(tableName);
+	}
+
+	void clear(){
+		entries.clear();
+	}
+
+	private Entry get(TableName tableName, boolean reload) throws IOException{
+
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(tableName);
+		if(!reload && null!=entry && now < entry.expireTime){
+			return entry;
+		}
+
+		//表不存在时getTableDescriptor抛出TableNotFoundException
+		HTableDescriptor desc;
+		long start = Metrics.start();
+		boolean success = false;
+		try{
+			desc = admin.getTableDescriptor(tableName);
+			success = true;
+		}finally{
+			Metrics.record("hbase.admin.getTableDescriptor", tableName.getNameAsString(), start, success);
+		}
+		Set<String> families = new HashSet<String>();
+		for(HColumnDescriptor family : desc.getColumnFamilies()){
+			families.add(family.getNameAsString());
+		}
+		entry = new Entry(Collections.unmodifiableSet(families), now + ttlMs);
+		if(ttlMs > 0){
+			entries.put(tableName, entry);
+		}
+		return entry;
+	}
+}
@@ -0,0 +1,15 @@
+package com.cp.hdfs;
+
+/**
+ * 传输进度回调，在传输线程中调用，应尽快返回
+ */
+public interface TransferListener {
+	
+	/**
+	 * @param path	传输中的文件
+	 * @param transferred	已传输的字节数
+	 * @param total	文件总字节数，未知时为-1
+	 * @param bytesPerSecond	从开始到当前的平均速率（字节/秒）
+	 */
+	void onProgress(String path, long transferred, long total, double bytesPerSecond);
+}
@@ -0,0 +1,129 @@
+package com.cp.hdfs;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量传输结果：成功、跳过的文件数，传输字节数，耗时及各文件的错误
+ * 各工作线程并发累计，线程安全
+ */
+public class TransferReport {
+	
+	private final long startTime = System.currentTimeMillis();
+	private volatile long endTime = 0;
+	
+	private final AtomicLong files = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong storedBytes = new AtomicLong();
+	private final Map<String, Throwable> errors = new ConcurrentSkipListMap<String, Throwable>();
+	
+	/**
+	 * 记录一个传输成功的文件
+	 * @param fileBytes	文件字节数
+	 */
+	public void success(long fileBytes){
+		success(fileBytes, fileBytes);
+	}
+	
+	/**
+	 * 记录一个压缩传输成功的文件
+	 * @param fileBytes	原始字节数
+	 * @param fileStoredBytes	HDFS上存储的字节数
+	 */
+	public void success(long fileBytes, long fileStoredBytes){
+		files.incrementAndGet();
+		bytes.addAndGet(fileBytes);
+		storedBytes.addAndGet(fileStoredBytes);
+	}
+	
+	/**
+	 * 记录一个跳过的文件
+	 */
+	public void skip(){
+		skipped.incrementAndGet();
+	}
+	
+	/**
+	 * 记录一个传输失败的文件
+	 * @param path	文件路径
+	 * @param cause	失败原因
+	 */
+	public void failure(String path, Throwable cause){
+		errors.put(path, cause);
+	}
+	
+	/**
+	 * 传输结束，固定耗时
+	 */
+	public void finish(){
+		endTime = System.currentTimeMillis();
+	}
+	
+	public long getFiles(){
+		return files.get();
+	}
+	
+	public long getSkipped(){
+		return skipped.get();
+	}
+	
+	public long getBytes(){
+		return bytes.get();
+	}
+	
+	/**
+	 * HDFS上存储的字节数，未压缩时与getBytes相同
+	 */
+	public long getStoredBytes(){
+		return storedBytes.get();
+	}
+	
+	/**
+	 * 压缩比，原始字节数 / 存储字节数
+	 */
+	public double getCompressionRatio(){
+		long stored = storedBytes.get();
+		return (0==stored) ? 1 : (double) bytes.get() / stored;
+	}
+	
+	/**
+	 * 文件路径 -> 失败原因
+	 */
+	public Map<String, Throwable> getErrors(){
+		return Collections.unmodifiableMap(errors);
+	}
+	
+	public boolean hasErrors(){
+		return !errors.isEmpty();
+	}
+	
+	/**
+	 * 耗时（毫秒），未结束时为到当前的耗时
+	 */
+	public long getElapsedMs(){
+		return ((0==endTime) ? System.currentTimeMillis() : endTime) - startTime;
+	}
+	
+	public double getBytesPerSecond(){
+		long elapsed = getElapsedMs();
+		return (0==elapsed) ? 0 : bytes.get() * 1000.0 / elapsed;
+	}
+	
+	public double getFilesPerSecond(){
+		long elapsed = getElapsedMs();
+		return (0==elapsed) ? 0 : files.get() * 1000.0 / elapsed;
+	}
+	
+	@Override
+	public String toString(){
+		String result = String.format("传输%d个文件，跳过%d个，失败%d个，共%d字节，耗时%dms，%.1f文件/秒，%.1fMB/秒",
+				getFiles(), getSkipped(), errors.size(), getBytes(), getElapsedMs(), getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024));
+		if(getStoredBytes()!=getBytes()){
+			result += String.format("，存储%d字节，压缩比%.2f", getStoredBytes(), getCompressionRatio());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,357 @@
+package com.cp.hdfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import com.cp.metrics.Metrics;
+
+/**
+ * 并行递归遍历
+ * 最多parallelism个线程同时列目录，每个目录以listStatusIterator分页读取，发现的子目录放入待列队列；
+ * 匹配过滤条件的条目经有界队列交给调用线程回调，队列写满时列目录线程等待，内存占用与文件数无关；
+ * 待列目录队列不设上限（列目录线程自身也要向其中放入子目录，设上限可能互相等待），占用与已发现但尚未列出的目录数成正比
+ * 不做额外的exists检查，根路径不存在时抛出FileNotFoundException；回调顺序不确定，需要有序输出时setSorted(true)
+ * 同一个遍历器不可并发调用walk
+ */
+public class TreeWalker {
+	
+	private static final FileStatus END = new FileStatus();		//遍历结束标记
+	private static final int QUEUE_CAPACITY = 10000;
+	private static final long POLL_MS = 100;
+	
+	private final FileSystem fs;
+	private final int parallelism;
+	private PathMatcher glob = null;
+	private long modifiedAfter = Long.MIN_VALUE;
+	private long modifiedBefore = Long.MAX_VALUE;
+	private boolean includeDirectories = false;
+	private boolean sorted = false;
+	
+	private volatile boolean stopped = false;
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+	
+	/**
+	 * @param fs	HDFS文件系统客户端
+	 * @param parallelism	同时列目录的线程数
+	 */
+	TreeWalker(FileSystem fs, int parallelism){
+		this.fs = fs;
+		this.parallelism = Math.max(1, parallelism);
+	}
+	
+	/**
+	 * 路径过滤条件，匹配相对于根目录的路径，语法与HDFSDao.uploadDirectory相同（java.nio的glob）：
+	 * "*"不跨目录，如"*.csv"只匹配顶层文件，"**.csv"匹配各层文件，"2024-0[1-3]/*"匹配指定子目录下的文件
+	 */
+	public TreeWalker setGlob(String glob){
+		this.glob = (null==glob) ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		return this;
+	}
+	
+	/**
+	 * 只回调修改时间在[after, before)内的条目
+	 * @param after	起始时间（毫秒），包含
+	 * @param before	结束时间（毫秒），不包含
+	 */
+	public TreeWalker setModificationTime(long after, long before){
+		this.modifiedAfter = after;
+		this.modifiedBefore = before;
+		return this;
+	}
+	
+	/**
+	 * 是否回调目录，默认只回调文件；目录无论是否回调都会继续遍历
+	 */
+	public TreeWalker setIncludeDirectories(boolean includeDirectories){
+		this.includeDirectories = includeDirectories;
+		return this;
+	}
+	
+	/**
+	 * 是否按顺序回调，默认不排序
+	 * 排序时每个目录的条目按名称排序，目录之后紧接其下的条目（深度优先先序）；
+	 * 列目录线程按顺序预先列出当前目录下接下来的至多parallelism个子目录，
+	 * 内存占用与目录深度、单个目录的条目数成正比，与文件总数无关
+	 */
+	public TreeWalker setSorted(boolean sorted){
+		this.sorted = sorted;
+		return this;
+	}
+	
+	/**
+	 * 遍历根目录下的所有条目，在调用线程中逐个回调handler
+	 * @param rootPath	根目录，为文件时只回调该文件
+	 * @param handler	回调，返回false时停止遍历
+	 * @return	回调的条目数
+	 */
+	public long walk(String rootPath, FileStatusHandler handler) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		long count = 0;
+		try{
+			count = doWalk(rootPath, handler);
+			success = true;
+			return count;
+		}finally{
+			Metrics.record("hdfs.walk", Metrics.pathLabel(rootPath), start, success, count, 0);
+		}
+	}
+	
+	private long doWalk(String rootPath, FileStatusHandler handler) throws IOException{
+		
+		stopped = false;
+		error.set(null);
+		FileStatus root = fs.getFileStatus(new Path(rootPath));		//不存在时抛出FileNotFoundException
+		if(!root.isDirectory()){
+			return (accept(root, root.getPath().getName()) && handler.onStatus(root)) ? 1 : 0;
+		}
+		final Path rootDir = root.getPath();
+		if(sorted){
+			return walkSorted(rootDir, handler);
+		}
+		
+		final BlockingQueue<Path> dirs = new LinkedBlockingQueue<Path>();
+		final BlockingQueue<FileStatus> results = new ArrayBlockingQueue<FileStatus>(QUEUE_CAPACITY);
+		final AtomicInteger pending = new AtomicInteger(1);		//已发现但未列完的目录数，降为0时遍历结束
+		dirs.add(root.getPath());
+		
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		try{
+			for(int i = 0; i < parallelism; i++){
+				pool.execute(new Runnable(){
+					@Override
+					public void run(){
+						try{
+							while(!stopped && pending.get() > 0){
+								Path dir = dirs.poll(POLL_MS, TimeUnit.MILLISECONDS);
+								if(null!=dir){
+									listDir(dir, rootDir, dirs, results, pending);
+								}
+							}
+						}catch(Throwable e){
+							error.compareAndSet(null, e);
+							stopped = true;
+						}
+					}
+				});
+			}
+			
+			long count = 0;
+			while(true){
+				FileStatus status = results.poll(POLL_MS, TimeUnit.MILLISECONDS);
+				checkError();
+				if(status==END){
+					break;
+				}
+				if(null!=status){
+					count++;
+					if(!handler.onStatus(status)){
+						break;
+					}
+				}
+			}
+			return count;
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("目录遍历被中断").initCause(e);
+		}finally{
+			stopped = true;
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * 分页列出一个目录，子目录放入待列队列，匹配的条目放入结果队列
+	 */
+	private void listDir(Path dir, Path root, BlockingQueue<Path> dirs, BlockingQueue<FileStatus> results, AtomicInteger pending) throws IOException, InterruptedException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		long entries = 0;
+		try{
+			RemoteIterator<FileStatus> it = fs.listStatusIterator(dir);
+			while(!stopped && it.hasNext()){
+				FileStatus status = it.next();
+				entries++;
+				String relative = relativePath(root, status.getPath());
+				if(status.isDirectory()){
+					pending.incrementAndGet();
+					dirs.add(status.getPath());
+					if(includeDirectories && accept(status, relative)){
+						put(results, status);
+					}
+				}else if(accept(status, relative)){
+					put(results, status);
+				}
+			}
+			success = true;
+		}catch(IOException e){
+			error.compareAndSet(null, e);		//先记录异常再放入结束标记，调用线程不会把失败误当作遍历完成
+			stopped = true;
+			throw e;
+		}finally{
+			Metrics.record("hdfs.listStatusIterator", Metrics.pathLabel(dir.toUri().getPath()), start, success, entries, 0);
+			if(0==pending.decrementAndGet()){
+				put(results, END);
+			}
+		}
+	}
+	
+	/**
+	 * 按顺序遍历，调用线程深度优先回调，子目录由线程池预先列出
+	 */
+	private long walkSorted(Path rootDir, FileStatusHandler handler) throws IOException{
+		
+		long[] count = new long[1];
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		try{
+			walkSorted(rootDir, listSorted(rootDir), handler, pool, count);
+			return count[0];
+		}catch(InterruptedException e){
+			throw (InterruptedIOException) new InterruptedIOException("目录遍历被中断").initCause(e);
+		}finally{
+			stopped = true;		//尚未开始的预先列目录任务直接返回
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * 按名称顺序回调一个目录下的条目，遇到子目录时递归
+	 * @param entries	该目录已排序的条目
+	 * @param count	已回调的条目数
+	 * @return	是否继续遍历
+	 */
+	private boolean walkSorted(Path root, FileStatus[] entries, FileStatusHandler handler, ExecutorService pool, long[] count) throws IOException, InterruptedException{
+		
+		List<Path> subdirs = new ArrayList<Path>();
+		for(FileStatus status : entries){
+			if(status.isDirectory()){
+				subdirs.add(status.getPath());
+			}
+		}
+		
+		//按子目录的顺序提交列目录任务，最多提前parallelism个
+		Deque<Future<FileStatus[]>> listings = new ArrayDeque<Future<FileStatus[]>>();
+		int next = 0;
+		try{
+			for(FileStatus status : entries){
+				while(listings.size() < parallelism && next < subdirs.size()){
+					listings.add(pool.submit(listTask(subdirs.get(next++))));
+				}
+				boolean matched = accept(status, relativePath(root, status.getPath()));
+				if(matched && (includeDirectories || !status.isDirectory())){
+					count[0]++;
+					if(!handler.onStatus(status)){
+						return false;
+					}
+				}
+				if(status.isDirectory() && !walkSorted(root, get(listings.poll()), handler, pool, count)){
+					return false;
+				}
+			}
+			return true;
+		}finally{
+			for(Future<FileStatus[]> listing : listings){
+				listing.cancel(false);
+			}
+		}
+	}
+	
+	private Callable<FileStatus[]> listTask(final Path dir){
+		return new Callable<FileStatus[]>(){
+			@Override
+			public FileStatus[] call() throws IOException{
+				return stopped ? null : listSorted(dir);
+			}
+		};
+	}
+	
+	/**
+	 * 列出一个目录并按名称排序（同一目录下FileStatus按路径比较即按名称比较）
+	 */
+	private FileStatus[] listSorted(Path dir) throws IOException{
+		
+		long start = Metrics.start();
+		boolean success = false;
+		FileStatus[] entries = null;
+		try{
+			entries = fs.listStatus(dir);
+			Arrays.sort(entries);
+			success = true;
+			return entries;
+		}finally{
+			Metrics.record("hdfs.listStatus", Metrics.pathLabel(dir.toUri().getPath()), start, success, (null==entries) ? 0 : entries.length, 0);
+		}
+	}
+	
+	private static FileStatus[] get(Future<FileStatus[]> listing) throws IOException, InterruptedException{
+		
+		try{
+			return listing.get();
+		}catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("目录遍历失败", e.getCause());
+		}
+	}
+	
+	/**
+	 * 相对于根目录的路径，以"/"分隔；根目录为"/"时不会多去掉一个字符
+	 * @param root	根目录
+	 * @param path	根目录下的路径
+	 */
+	static String relativePath(Path root, Path path){
+		
+		String rootPath = root.toUri().getPath();
+		String fullPath = path.toUri().getPath();
+		int prefix = rootPath.endsWith("/") ? rootPath.length() : rootPath.length() + 1;
+		return (fullPath.length() > prefix && fullPath.startsWith(rootPath)) ? fullPath.substring(prefix) : path.getName();
+	}
+	
+	private boolean accept(FileStatus status, String relative){
+		long mtime = status.getModificationTime();
+		return mtime >= modifiedAfter && mtime < modifiedBefore && (null==glob || glob.matches(Paths.get(relative)));
+	}
+	
+	private void put(BlockingQueue<FileStatus> queue, FileStatus status) throws InterruptedException{
+		while(!stopped && !queue.offer(status, POLL_MS, TimeUnit.MILLISECONDS)){
+		}
+	}
+	
+	private void checkError() throws IOException{
+		
+		Throwable e = error.get();
+		if(null==e){
+			return;
+		}
+		if(e instanceof IOException){
+			throw (IOException) e;
+		}
+		throw new IOException("目录遍历失败", e);
+	}
+}
@@ -0,0 +1,27 @@
+package com.cp.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行基准测试并把结果保存为JSON，供不同版本间对比
+ * 参数：[结果文件路径] [基准测试类名正则]，默认jmh-result.json及全部基准测试
+ */
+public class BenchmarkMain{
+
+	public static void main(String[] args) throws Exception{
+
+		String result = (args.length > 0) ? args[0] : "jmh-result.json";
+		String include = (args.length > 1) ? args[1] : "com\\.cp\\.bench\\..*Benchmark";
+
+		Options options = new OptionsBuilder()
+				.include(include)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(options).run();
+		System.out.println("基准测试结果已保存至" + result);
+	}
+}
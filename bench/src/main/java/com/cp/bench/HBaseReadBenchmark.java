@@ -0,0 +1,68 @@
+package com.cp.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cp.hbase.HBaseDao;
+import com.cp.hbase.MultiGetResult;
+
+/**
+ * 随机读：逐行getResult与getRows批量查询，结果均为每秒查询的行数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HBaseReadBenchmark{
+
+	private static final String TABLE = "bench_read";
+	private static final int ROWS = 100000;
+	private static final int BATCH_SIZE = 100;
+
+	private long seq = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		MiniClusters.start();
+		MiniClusters.recreateTable(TABLE);
+		Map<String, Map<String, String>> rows = new HashMap<String, Map<String, String>>();
+		for(int i = 0; i < ROWS; i++){
+			Map<String, String> cells = new HashMap<String, String>();
+			cells.put("v", String.valueOf(i));
+			rows.put(MiniClusters.rowKey(i), cells);
+		}
+		HBaseDao.addRows(TABLE, MiniClusters.FAMILY, rows);
+	}
+
+	@Benchmark
+	public Result getRow() throws Exception{
+		return HBaseDao.getResult(TABLE, MiniClusters.rowKey(seq++ % ROWS));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public MultiGetResult getRows() throws Exception{
+		String[] rowKeys = new String[BATCH_SIZE];
+		for(int i = 0; i < BATCH_SIZE; i++){
+			rowKeys[i] = MiniClusters.rowKey(seq++ % ROWS);
+		}
+		return HBaseDao.getRows(TABLE, rowKeys, null);
+	}
+}
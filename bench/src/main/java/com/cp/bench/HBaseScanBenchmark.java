@@ -0,0 +1,67 @@
+package com.cp.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cp.hbase.CellReader;
+import com.cp.hbase.CellVisitor;
+import com.cp.hbase.HBaseDao;
+import com.cp.hbase.ScanOptions;
+
+/**
+ * 全表扫描：不同caching下扫描ROWS行所需的时间
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HBaseScanBenchmark{
+
+	private static final String TABLE = "bench_scan";
+	private static final int ROWS = 200000;
+
+	@Param({"1", "100", "1000", "10000"})
+	public int caching;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		MiniClusters.start();
+		MiniClusters.recreateTable(TABLE);
+		Map<String, Map<String, String>> rows = new HashMap<String, Map<String, String>>();
+		for(int i = 0; i < ROWS; i++){
+			Map<String, String> cells = new HashMap<String, String>();
+			cells.put("v", String.valueOf(i));
+			rows.put(MiniClusters.rowKey(i), cells);
+		}
+		HBaseDao.addRows(TABLE, MiniClusters.FAMILY, rows);
+	}
+
+	@Benchmark
+	public long scanCells(final Blackhole blackhole) throws Exception{
+		return HBaseDao.scanCells(TABLE, new ScanOptions().setCaching(caching), new CellVisitor(){
+			@Override
+			public boolean visit(Cell cell){
+				blackhole.consume(CellReader.parseLong(cell));
+				return true;
+			}
+		});
+	}
+}
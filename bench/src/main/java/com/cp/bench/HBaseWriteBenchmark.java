@@ -0,0 +1,79 @@
+package com.cp.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cp.hbase.HBaseDao;
+import com.cp.hbase.HBaseWriter;
+
+/**
+ * 写入：逐行addRow、HBaseWriter缓冲写入、addRows批量写入，结果均为每秒写入的行数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HBaseWriteBenchmark{
+
+	private static final String TABLE = "bench_write";
+	private static final int BATCH_SIZE = 100;
+
+	private HBaseWriter writer;
+	private long seq = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		MiniClusters.start();
+		MiniClusters.recreateTable(TABLE);
+		writer = HBaseDao.openWriter(TABLE);
+	}
+
+	@TearDown(Level.Iteration)
+	public void flush() throws Exception{
+		writer.flush();		//缓冲中的数据计入本轮
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception{
+		writer.close();
+	}
+
+	@Benchmark
+	public void addRow() throws Exception{
+		HBaseDao.addRow(TABLE, MiniClusters.rowKey(seq++), MiniClusters.FAMILY, "v", "1024");
+	}
+
+	@Benchmark
+	public void writerAddRow() throws Exception{
+		writer.addRow(MiniClusters.rowKey(seq++), MiniClusters.FAMILY, "v", "1024");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void addRows() throws Exception{
+		Map<String, Map<String, String>> rows = new HashMap<String, Map<String, String>>();
+		for(int i = 0; i < BATCH_SIZE; i++){
+			Map<String, String> cells = new HashMap<String, String>();
+			cells.put("v", "1024");
+			rows.put(MiniClusters.rowKey(seq++), cells);
+		}
+		HBaseDao.addRows(TABLE, MiniClusters.FAMILY, rows);
+	}
+}
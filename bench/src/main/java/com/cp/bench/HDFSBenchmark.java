@@ -0,0 +1,94 @@
+package com.cp.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cp.hdfs.HDFSDao;
+import com.cp.hdfs.MyHDFSDao;
+
+/**
+ * HDFSDao与MyHDFSDao在不同文件大小下的上传、下载耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HDFSBenchmark{
+
+	private static final String DIR = "/bench";
+
+	@Param({"HDFSDao", "MyHDFSDao"})
+	public String dao;
+
+	@Param({"65536", "8388608", "134217728"})
+	public long fileSize;
+
+	private File localFile;
+	private File downloadFile;
+	private String remoteFile;
+	private long seq = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+
+		MiniClusters.start();
+		localFile = File.createTempFile("bench-upload", ".dat");
+		downloadFile = File.createTempFile("bench-download", ".dat");
+		byte[] buffer = new byte[64 * 1024];
+		new Random(fileSize).nextBytes(buffer);
+		FileOutputStream out = new FileOutputStream(localFile);
+		try{
+			for(long written = 0; written < fileSize; written += buffer.length){
+				out.write(buffer, 0, (int) Math.min(buffer.length, fileSize - written));
+			}
+		}finally{
+			out.close();
+		}
+		remoteFile = DIR + "/" + dao + "-" + fileSize + ".dat";
+		HDFSDao.uploadFile(localFile.getPath(), remoteFile);		//下载测试的源文件
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		localFile.delete();
+		downloadFile.delete();
+	}
+
+	@Benchmark
+	public void upload() throws Exception{
+		String dest = DIR + "/upload-" + dao + "-" + (seq++ % 16);
+		if("HDFSDao".equals(dao)){
+			HDFSDao.uploadFile(localFile.getPath(), dest);
+		}else{
+			MyHDFSDao.uploadFile(localFile.getPath(), dest);
+		}
+	}
+
+	@Benchmark
+	public void download() throws Exception{
+		downloadFile.delete();
+		if("HDFSDao".equals(dao)){
+			HDFSDao.downloadFile(remoteFile, downloadFile.getPath());
+		}else{
+			MyHDFSDao.downloadFile(remoteFile, downloadFile.getPath());
+		}
+	}
+}
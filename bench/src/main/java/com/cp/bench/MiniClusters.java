@@ -0,0 +1,74 @@
+package com.cp.bench;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableNotFoundException;
+
+import com.cp.hbase.FamilyOptions;
+import com.cp.hbase.HBaseDao;
+import com.cp.hbase.SplitKeys;
+import com.cp.hdfs.HDFSDao;
+import com.cp.hdfs.MyHDFSDao;
+
+/**
+ * 基准测试用的进程内集群
+ * HBaseTestingUtility在本进程内启动MiniZooKeeperCluster、MiniDFSCluster及MiniHBaseCluster，只使用本机回环地址，不需要网络
+ * 同一JVM只启动一次，各DAO连接到该集群，JVM退出时关闭
+ */
+final class MiniClusters{
+
+	static final String FAMILY = "cf";
+
+	private static HBaseTestingUtility util = null;
+
+	private MiniClusters(){
+	}
+
+	/**
+	 * 启动集群并初始化HBaseDao、HDFSDao、MyHDFSDao
+	 */
+	static synchronized HBaseTestingUtility start() throws Exception{
+
+		if(null!=util){
+			return util;
+		}
+		final HBaseTestingUtility started = new HBaseTestingUtility();
+		started.startMiniCluster(1);
+		HBaseDao.init(started.getConfiguration());
+		HDFSDao.init(started.getConfiguration());
+		MyHDFSDao.init(started.getConfiguration());
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			@Override
+			public void run(){
+				try{
+					HBaseDao.end();
+					started.shutdownMiniCluster();
+				}catch(Exception e){
+					System.out.println("关闭测试集群失败：" + e);
+				}
+			}
+		});
+		util = started;
+		return util;
+	}
+
+	/**
+	 * 重建一个预分区为4个Region的表，行键使用8位十六进制
+	 * @param tableName	表名
+	 */
+	static void recreateTable(String tableName) throws Exception{
+
+		try{
+			HBaseDao.deleteTable(tableName);
+		}catch(TableNotFoundException e){
+			//首次运行时表不存在
+		}
+		HBaseDao.createTable(tableName, FamilyOptions.of(new String[]{FAMILY}), SplitKeys.hex(4));
+	}
+
+	/**
+	 * 第i行的行键，按十六进制均匀分布在各Region
+	 */
+	static String rowKey(long i){
+		return String.format("%08x", (i * 0x9E3779B1L) & 0xFFFFFFFFL);
+	}
+}